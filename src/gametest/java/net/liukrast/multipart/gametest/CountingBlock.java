@@ -0,0 +1,85 @@
+package net.liukrast.multipart.gametest;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Solid block counting the neighbor and shape updates it receives.
+ * Stress tests surround every structure with it, so each update leaving a structure is counted once.
+ * Updates are counted separately for each watched {@link Area}, so tests running side by side don't see each other's updates.
+ * Only used from the server thread.
+ * */
+@SuppressWarnings("deprecation")
+public class CountingBlock extends Block {
+    private final List<Area> areas = new ArrayList<>();
+
+    public CountingBlock(Properties properties) {
+        super(properties);
+    }
+
+    /**
+     * Starts counting the updates received inside a box.
+     * @param box the box, corners included
+     * @return the area counting the updates
+     * */
+    public Area watch(BoundingBox box) {
+        var area = new Area(box);
+        areas.add(area);
+        return area;
+    }
+
+    /**
+     * Stops counting the updates of an area.
+     * @param area the area returned by {@link #watch}
+     * */
+    public void unwatch(Area area) {
+        areas.remove(area);
+    }
+
+    private void count(BlockPos pos) {
+        for(Area area : areas) {
+            if(area.box.isInside(pos)) area.updates++;
+        }
+    }
+
+    @Override
+    protected void neighborChanged(@NotNull BlockState state, @NotNull Level level, @NotNull BlockPos pos, @NotNull Block neighborBlock, @NotNull BlockPos neighborPos, boolean movedByPiston) {
+        count(pos);
+    }
+
+    @Override
+    protected @NotNull BlockState updateShape(@NotNull BlockState state, @NotNull Direction direction, @NotNull BlockState neighborState, @NotNull LevelAccessor level, @NotNull BlockPos pos, @NotNull BlockPos neighborPos) {
+        count(pos);
+        return state;
+    }
+
+    /**
+     * The updates received by the counters of a box.
+     * */
+    public static final class Area {
+        private final BoundingBox box;
+        private long updates;
+
+        private Area(BoundingBox box) {
+            this.box = box;
+        }
+
+        /**
+         * @return the updates received since the last call, resetting the count
+         * */
+        public long drain() {
+            long updates = this.updates;
+            this.updates = 0;
+            return updates;
+        }
+    }
+}
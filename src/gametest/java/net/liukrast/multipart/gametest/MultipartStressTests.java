@@ -0,0 +1,32 @@
+package net.liukrast.multipart.gametest;
+
+import net.liukrast.multipart.MultipartAPI;
+import net.minecraft.gametest.framework.GameTestGenerator;
+import net.minecraft.gametest.framework.TestFunction;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Places and breaks thousands of multiparts of every {@link StressBlocks} block, failing when a {@link StressRun} check fails.
+ * Each block runs in its own batch, so tests don't share ticks and their timings don't add up.
+ * Run with {@code ./gradlew runGameTestServer}.
+ * */
+@GameTestHolder(MultipartAPI.MOD_ID)
+public final class MultipartStressTests {
+    private static final String BATCH = MultipartAPI.MOD_ID + ".stress";
+    private static final String TEMPLATE = MultipartAPI.MOD_ID + ":stress";
+
+    private MultipartStressTests() {}
+
+    @GameTestGenerator
+    public static List<TestFunction> stress() {
+        var tests = new ArrayList<TestFunction>();
+        for(StressBlocks.Entry entry : StressBlocks.ENTRIES) {
+            tests.add(new TestFunction(BATCH + "." + entry.name(), MultipartAPI.MOD_ID + "." + entry.name(), TEMPLATE, StressRun.TIMEOUT, 0, true,
+                    helper -> new StressRun(helper, entry).start()));
+        }
+        return tests;
+    }
+}
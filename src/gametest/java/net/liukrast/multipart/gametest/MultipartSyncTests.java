@@ -0,0 +1,70 @@
+package net.liukrast.multipart.gametest;
+
+import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.network.MultipartStructurePayload;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.block.Blocks;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
+
+import java.util.BitSet;
+
+/**
+ * Applies {@link MultipartStructurePayload}s to a {@link PredictingLevel}, as received by the player who placed or broke the structure.
+ * Parts must match the server once the predictions are acknowledged.
+ * */
+@GameTestHolder(MultipartAPI.MOD_ID)
+@PrefixGameTestTemplate(false)
+public final class MultipartSyncTests {
+    private static final BlockPos ORIGIN = new BlockPos(8, 64, 8);
+
+    private MultipartSyncTests() {}
+
+    @GameTest(template = "stress")
+    public static void placeWhilePredicting(GameTestHelper helper) {
+        var block = StressBlocks.ENTRIES.get(1).block();
+        var geometry = block.getGeometry();
+        var state = block.defaultBlockState();
+        var level = new PredictingLevel();
+        var cursor = new BlockPos.MutableBlockPos();
+        // The player places the origin, setPlacedBy writes the other parts, all predicted
+        for(int i = 0; i < geometry.size(); i++) level.predict(geometry.relative(cursor, ORIGIN, Direction.NORTH, i).immutable(), block.getStateForPart(state, i));
+        var parts = new BitSet();
+        parts.set(1, geometry.size());
+        new MultipartStructurePayload(state, ORIGIN.asLong(), Direction.NORTH, false, parts).apply(level, level);
+        // The origin itself is confirmed by its own block update
+        level.write(ORIGIN, block.getStateForPart(state, 0));
+        level.acknowledge();
+        for(int i = 0; i < geometry.size(); i++) {
+            var found = level.getBlockState(geometry.relative(cursor, ORIGIN, Direction.NORTH, i));
+            helper.assertTrue(found == block.getStateForPart(state, i), "part " + i + " reverted to " + found + " after the prediction was acknowledged");
+        }
+        helper.succeed();
+    }
+
+    @GameTest(template = "stress")
+    public static void breakWhilePredicting(GameTestHelper helper) {
+        var block = StressBlocks.ENTRIES.get(1).block();
+        var geometry = block.getGeometry();
+        var state = block.defaultBlockState();
+        var level = new PredictingLevel();
+        var cursor = new BlockPos.MutableBlockPos();
+        for(int i = 0; i < geometry.size(); i++) level.set(geometry.relative(cursor, ORIGIN, Direction.NORTH, i).immutable(), block.getStateForPart(state, i));
+        // The player breaks the origin, destroy clears the other parts, all predicted
+        var air = Blocks.AIR.defaultBlockState();
+        for(int i = 0; i < geometry.size(); i++) level.predict(geometry.relative(cursor, ORIGIN, Direction.NORTH, i).immutable(), air);
+        var parts = new BitSet();
+        parts.set(1, geometry.size());
+        new MultipartStructurePayload(state, ORIGIN.asLong(), Direction.NORTH, true, parts).apply(level, level);
+        level.write(ORIGIN, air);
+        level.acknowledge();
+        for(int i = 0; i < geometry.size(); i++) {
+            var found = level.getBlockState(geometry.relative(cursor, ORIGIN, Direction.NORTH, i));
+            helper.assertTrue(found.isAir(), "part " + i + " came back as " + found + " after the prediction was acknowledged");
+        }
+        helper.succeed();
+    }
+}
@@ -0,0 +1,89 @@
+package net.liukrast.multipart.gametest;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.liukrast.multipart.network.MultipartStructurePayload;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stand-in for a client level while the local player predicts block changes, storing block states in a map.
+ * It follows {@code ClientLevel} and {@code BlockStatePredictionHandler}:
+ * a predicted write remembers the state the server had before, server verified writes to predicted positions only replace
+ * that remembered state, and acknowledging the predictions writes the remembered states back.
+ * */
+final class PredictingLevel implements BlockGetter, MultipartStructurePayload.PartWriter {
+    private final Long2ObjectOpenHashMap<BlockState> states = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<BlockState> known = new Long2ObjectOpenHashMap<>();
+
+    PredictingLevel() {
+        states.defaultReturnValue(Blocks.AIR.defaultBlockState());
+    }
+
+    /**
+     * Writes a state predicted by the local player.
+     * @param pos the position
+     * @param state the predicted state
+     * */
+    void predict(BlockPos pos, BlockState state) {
+        known.putIfAbsent(pos.asLong(), getBlockState(pos));
+        states.put(pos.asLong(), state);
+    }
+
+    /**
+     * Writes a state without any prediction, like a chunk or block update packet of a block nobody predicted.
+     * @param pos the position
+     * @param state the state
+     * */
+    void set(BlockPos pos, BlockState state) {
+        states.put(pos.asLong(), state);
+    }
+
+    /**
+     * Server verified write, as done by {@code ClientLevel#setServerVerifiedBlockState}.
+     * */
+    @Override
+    public void write(BlockPos pos, BlockState state) {
+        long key = pos.asLong();
+        if(known.containsKey(key)) known.put(key, state);
+        else states.put(key, state);
+    }
+
+    /**
+     * The server acknowledged every prediction: remembered server states are written back.
+     * */
+    void acknowledge() {
+        states.putAll(known);
+        known.clear();
+    }
+
+    @Override
+    public @NotNull BlockState getBlockState(BlockPos pos) {
+        return states.get(pos.asLong());
+    }
+
+    @Override
+    public @NotNull FluidState getFluidState(@NotNull BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public @Nullable BlockEntity getBlockEntity(@NotNull BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public int getHeight() {
+        return 384;
+    }
+
+    @Override
+    public int getMinBuildHeight() {
+        return -64;
+    }
+}
@@ -0,0 +1,159 @@
+package net.liukrast.multipart.gametest;
+
+import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.block.AbstractDirectionalMultipartBlock;
+import net.liukrast.multipart.block.AbstractFacingMultipartBlock;
+import net.liukrast.multipart.block.AbstractMultipartBlock;
+import net.liukrast.multipart.block.PartStorage;
+import net.liukrast.multipart.block.UpdateMode;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.block.state.BlockBehaviour;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.registries.RegisterEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Blocks used by {@link MultipartStressTests}: boxes of several sizes, for each way a multipart can be oriented,
+ * and with {@link PartStorage#REGISTRY}.
+ * Only registered when the game test source set is loaded.
+ * */
+@EventBusSubscriber(modid = MultipartAPI.MOD_ID, bus = EventBusSubscriber.Bus.MOD)
+public final class StressBlocks {
+    /**
+     * The box sizes of the stress structures, as side, height and depth.
+     * */
+    static final int[][] SIZES = {{2, 1, 1}, {2, 2, 2}, {3, 3, 3}, {4, 4, 4}};
+    /*
+     * defineParts runs from the Block constructor, before any field is assigned,
+     * so the size of the block being created is handed over through this.
+     * */
+    private static final ThreadLocal<int[]> CREATING = new ThreadLocal<>();
+    static final List<Entry> ENTRIES = new ArrayList<>();
+    static CountingBlock counter;
+
+    private StressBlocks() {}
+
+    /**
+     * A registered stress block.
+     * @param name the test name of the block
+     * @param block the block
+     * @param size the box size of the block
+     * */
+    record Entry(String name, AbstractMultipartBlock block, int[] size) {}
+
+    /**
+     * How a stress block is oriented, or where it stores its parts.
+     * */
+    enum Kind {
+        FIXED(Fixed::new),
+        FACING(Facing::new),
+        DIRECTIONAL(Directional::new),
+        REGISTRY(Registry::new);
+
+        private final Function<BlockBehaviour.Properties, AbstractMultipartBlock> factory;
+
+        Kind(Function<BlockBehaviour.Properties, AbstractMultipartBlock> factory) {
+            this.factory = factory;
+        }
+    }
+
+    @SubscribeEvent
+    static void register(RegisterEvent event) {
+        event.register(Registries.BLOCK, helper -> {
+            counter = new CountingBlock(BlockBehaviour.Properties.of().strength(1));
+            helper.register(ResourceLocation.fromNamespaceAndPath(MultipartAPI.MOD_ID, "stress_counter"), counter);
+            for(Kind kind : Kind.values()) {
+                for(int[] size : SIZES) {
+                    var name = "stress_" + kind.name().toLowerCase() + "_" + size[0] + "x" + size[1] + "x" + size[2];
+                    CREATING.set(size);
+                    try {
+                        var block = kind.factory.apply(BlockBehaviour.Properties.of().strength(1));
+                        helper.register(ResourceLocation.fromNamespaceAndPath(MultipartAPI.MOD_ID, name), block);
+                        ENTRIES.add(new Entry(name, block, size));
+                    } finally {
+                        CREATING.remove();
+                    }
+                }
+            }
+        });
+    }
+
+    private static void defineBox(AbstractMultipartBlock.Builder builder) {
+        int[] size = CREATING.get();
+        builder.defineBox(0, 0, 0, size[0] - 1, size[1] - 1, 1 - size[2]);
+    }
+
+    private static final class Fixed extends AbstractMultipartBlock {
+        Fixed(Properties properties) {
+            super(properties);
+        }
+
+        @Override
+        public void defineParts(Builder builder) {
+            defineBox(builder);
+        }
+
+        @Override
+        public UpdateMode getUpdateMode() {
+            return UpdateMode.BATCHED;
+        }
+    }
+
+    private static final class Facing extends AbstractFacingMultipartBlock {
+        Facing(Properties properties) {
+            super(properties);
+        }
+
+        @Override
+        public void defineParts(Builder builder) {
+            defineBox(builder);
+        }
+
+        @Override
+        public UpdateMode getUpdateMode() {
+            return UpdateMode.BATCHED;
+        }
+    }
+
+    private static final class Directional extends AbstractDirectionalMultipartBlock {
+        Directional(Properties properties) {
+            super(properties);
+        }
+
+        @Override
+        public void defineParts(Builder builder) {
+            defineBox(builder);
+        }
+
+        @Override
+        public UpdateMode getUpdateMode() {
+            return UpdateMode.BATCHED;
+        }
+    }
+
+    private static final class Registry extends AbstractMultipartBlock {
+        Registry(Properties properties) {
+            super(properties);
+        }
+
+        @Override
+        public void defineParts(Builder builder) {
+            defineBox(builder);
+        }
+
+        @Override
+        public PartStorage getPartStorage() {
+            return PartStorage.REGISTRY;
+        }
+
+        @Override
+        public UpdateMode getUpdateMode() {
+            return UpdateMode.BATCHED;
+        }
+    }
+}
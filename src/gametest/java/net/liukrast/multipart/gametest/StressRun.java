@@ -0,0 +1,300 @@
+package net.liukrast.multipart.gametest;
+
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.liukrast.multipart.block.AbstractDirectionalMultipartBlock;
+import net.liukrast.multipart.block.AbstractFacingMultipartBlock;
+import net.liukrast.multipart.block.AbstractMultipartBlock;
+import net.liukrast.multipart.block.MultipartGeometry;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * One stress test: fills the test area with a grid of structures, then places, checks and breaks all of them, one phase per tick.
+ * Structures are surrounded by {@link CountingBlock}s, so every update leaving a structure is counted.
+ * <p>The first round warms up and is not measured. Time and allocations are always logged,
+ * but only checked against thresholds when running with {@code -Dmultipart_api.stress.timing=true},
+ * since they depend on the machine. Thresholds can be overridden through {@code multipart_api.stress.*} system properties:</p>
+ * <ul>
+ *     <li>{@code maxTickMillis}: the time spent in a single phase, for the whole grid</li>
+ *     <li>{@code maxPlaceNanos}, {@code maxBreakNanos}, {@code maxSurviveNanos}: the average time per part of each operation</li>
+ *     <li>{@code maxPlaceBytes}, {@code maxBreakBytes}, {@code maxSurviveBytes}: the average allocations per part of each operation</li>
+ * </ul>
+ * Block updates and parts are always checked exactly: placing or breaking a structure sends at most one neighbor and one shape update through each outer face,
+ * plus the updates of the single part written or removed by the player.
+ * */
+final class StressRun {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int ROUNDS = 20;
+    private static final int AREA = 48;
+    /**
+     * Ticks before the test times out: four phases per round, plus some margin.
+     * */
+    static final int TIMEOUT = ROUNDS * 4 + 20;
+    private static final boolean TIMING = Boolean.getBoolean("multipart_api.stress.timing");
+    private static final long MAX_TICK_NANOS = threshold("maxTickMillis", 50) * 1_000_000L;
+    private static final long MAX_PLACE_NANOS = threshold("maxPlaceNanos", 20_000);
+    private static final long MAX_BREAK_NANOS = threshold("maxBreakNanos", 20_000);
+    private static final long MAX_SURVIVE_NANOS = threshold("maxSurviveNanos", 5_000);
+    private static final long MAX_PLACE_BYTES = threshold("maxPlaceBytes", 4096);
+    private static final long MAX_BREAK_BYTES = threshold("maxBreakBytes", 4096);
+    private static final long MAX_SURVIVE_BYTES = threshold("maxSurviveBytes", 512);
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Direction[] HORIZONTAL = {Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST};
+    private static final com.sun.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemorySupported() ? threads : null;
+
+    private final GameTestHelper helper;
+    private final StressBlocks.Entry entry;
+    private final AbstractMultipartBlock block;
+    private final MultipartGeometry geometry;
+    private final ServerLevel level;
+    private final int cell;
+    private final int cells;
+    private final int maxUpdates;
+    private final BlockPos[] origins;
+    private final Direction[] directions;
+    private final CountingBlock.Area counted;
+    private final Stats place = new Stats("place");
+    private final Stats survive = new Stats("survive");
+    private final Stats destroy = new Stats("break");
+    private int tick;
+
+    StressRun(GameTestHelper helper, StressBlocks.Entry entry) {
+        this.helper = helper;
+        this.entry = entry;
+        this.block = entry.block();
+        this.geometry = block.getGeometry();
+        this.level = helper.getLevel();
+        int[] size = entry.size();
+        this.cell = Math.max(size[0], Math.max(size[1], size[2])) + 1;
+        this.cells = (AREA - 2) / cell;
+        this.maxUpdates = 2 * outerFaces(geometry) + 2 * DIRECTIONS.length;
+        this.origins = new BlockPos[cells * cells];
+        this.directions = new Direction[cells * cells];
+        this.counted = StressBlocks.counter.watch(BoundingBox.fromCorners(helper.absolutePos(BlockPos.ZERO), helper.absolutePos(new BlockPos(AREA - 1, cell, AREA - 1))));
+    }
+
+    private static long threshold(String name, long fallback) {
+        return Long.getLong("multipart_api.stress." + name, fallback);
+    }
+
+    private static long allocated() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static int outerFaces(MultipartGeometry geometry) {
+        var parts = new LongOpenHashSet(geometry.size());
+        for(BlockPos pos : geometry) parts.add(pos.asLong());
+        int faces = 0;
+        for(BlockPos pos : geometry) {
+            for(Direction direction : DIRECTIONS) {
+                if(!parts.contains(pos.relative(direction).asLong())) faces++;
+            }
+        }
+        return faces;
+    }
+
+    void start() {
+        helper.onEachTick(this::tick);
+    }
+
+    private void tick() {
+        int round = tick / 4;
+        if(round == ROUNDS) {
+            StressBlocks.counter.unwatch(counted);
+            for(Stats stats : new Stats[] {place, survive, destroy}) LOGGER.info("{}: {}", entry.name(), stats);
+            if(TIMING) {
+                place.check(MAX_PLACE_NANOS, MAX_PLACE_BYTES);
+                survive.check(MAX_SURVIVE_NANOS, MAX_SURVIVE_BYTES);
+                destroy.check(MAX_BREAK_NANOS, MAX_BREAK_BYTES);
+            }
+            helper.succeed();
+            return;
+        }
+        boolean measured = round > 0;
+        switch(tick++ % 4) {
+            case 0 -> fill(round);
+            case 1 -> place(measured ? place : null);
+            case 2 -> survive(measured ? survive : null);
+            default -> destroy(round, measured ? destroy : null);
+        }
+    }
+
+    /*
+     * Fills the area with counters, and picks the origin and direction of every structure of the round.
+     * */
+    private void fill(int round) {
+        var counter = StressBlocks.counter.defaultBlockState();
+        var cursor = new BlockPos.MutableBlockPos();
+        int extent = cells * cell + 1;
+        for(int x = 0; x < extent; x++) {
+            for(int y = 0; y < cell; y++) {
+                for(int z = 0; z < extent; z++) {
+                    level.setBlock(cursor.set(helper.absolutePos(new BlockPos(x, y, z))), counter, Block.UPDATE_CLIENTS | Block.UPDATE_KNOWN_SHAPE);
+                }
+            }
+        }
+        counted.drain();
+        for(int i = 0; i < origins.length; i++) {
+            Direction direction;
+            if(block instanceof AbstractDirectionalMultipartBlock) direction = DIRECTIONS[(i + round) % DIRECTIONS.length];
+            else if(block instanceof AbstractFacingMultipartBlock) direction = HORIZONTAL[(i + round) % HORIZONTAL.length];
+            else direction = Direction.NORTH;
+            // Moves the origin so the structure starts at the corner of its cell, whatever its direction
+            int minX = 0, minY = 0, minZ = 0;
+            for(int part = 0; part < geometry.size(); part++) {
+                minX = Math.min(minX, geometry.offsetX(direction, part));
+                minY = Math.min(minY, geometry.offsetY(direction, part));
+                minZ = Math.min(minZ, geometry.offsetZ(direction, part));
+            }
+            var corner = new BlockPos(1 + (i % cells) * cell, 1, 1 + (i / cells) * cell);
+            origins[i] = helper.absolutePos(corner).offset(-minX, -minY, -minZ);
+            directions[i] = direction;
+        }
+    }
+
+    private BlockState stateOf(int structure) {
+        return block.setDirection(block.defaultBlockState(), directions[structure]);
+    }
+
+    /*
+     * Places every structure like a player would: the origin is written, then setPlacedBy adds the other parts.
+     * */
+    private void place(Stats stats) {
+        long tickStart = System.nanoTime();
+        for(int i = 0; i < origins.length; i++) {
+            var state = stateOf(i);
+            long start = System.nanoTime(), bytes = allocated();
+            level.setBlock(origins[i], state, Block.UPDATE_ALL);
+            block.setPlacedBy(level, origins[i], state, null, ItemStack.EMPTY);
+            long nanos = System.nanoTime() - start;
+            bytes = allocated() - bytes;
+            record(stats, nanos, bytes, counted.drain());
+            expectParts(i, true);
+        }
+        checkTick(tickStart, "place", stats);
+    }
+
+    private void survive(Stats stats) {
+        long tickStart = System.nanoTime();
+        var cursor = new BlockPos.MutableBlockPos();
+        for(int i = 0; i < origins.length; i++) {
+            var state = level.getBlockState(origins[i]);
+            long start = System.nanoTime(), bytes = allocated();
+            boolean survives = state.canSurvive(level, origins[i]);
+            long nanos = System.nanoTime() - start;
+            bytes = allocated() - bytes;
+            record(stats, nanos, bytes, 0);
+            if(!survives) fail(i, "a complete structure can't survive");
+            int part = geometry.size() - 1;
+            geometry.relative(cursor, origins[i], directions[i], part);
+            if(!level.getBlockState(cursor).canSurvive(level, cursor)) fail(i, "part " + part + " of a complete structure can't survive");
+        }
+        checkTick(tickStart, "survive", stats);
+    }
+
+    /*
+     * Breaks a different part of every structure like a player would: the part is removed, then destroy clears the others.
+     * */
+    private void destroy(int round, Stats stats) {
+        long tickStart = System.nanoTime();
+        var cursor = new BlockPos.MutableBlockPos();
+        for(int i = 0; i < origins.length; i++) {
+            int part = (i * 31 + round) % geometry.size();
+            var pos = geometry.relative(cursor, origins[i], directions[i], part).immutable();
+            var state = level.getBlockState(pos);
+            long start = System.nanoTime(), bytes = allocated();
+            level.removeBlock(pos, false);
+            long nanos = System.nanoTime() - start;
+            bytes = allocated() - bytes;
+            if(geometry.size() > 1) {
+                var other = geometry.relative(cursor, origins[i], directions[i], part == 0 ? 1 : 0);
+                if(level.getBlockState(other).canSurvive(level, other)) fail(i, "an incomplete structure can still survive");
+            }
+            start = System.nanoTime();
+            bytes -= allocated();
+            block.destroy(level, pos, state);
+            nanos += System.nanoTime() - start;
+            bytes += allocated();
+            record(stats, nanos, bytes, counted.drain());
+            expectParts(i, false);
+        }
+        checkTick(tickStart, "break", stats);
+    }
+
+    private void record(Stats stats, long nanos, long bytes, long updates) {
+        if(updates > maxUpdates) helper.fail(String.format(Locale.ROOT, "%s: %d block updates for one structure, expected at most %d", entry.name(), updates, maxUpdates));
+        if(stats != null) stats.add(nanos, bytes, updates);
+    }
+
+    private void expectParts(int structure, boolean present) {
+        var cursor = new BlockPos.MutableBlockPos();
+        var property = block.getPartsProperty();
+        for(int part = 0; part < geometry.size(); part++) {
+            var state = level.getBlockState(geometry.relative(cursor, origins[structure], directions[structure], part));
+            boolean found = state.is(block) && state.getValue(property) == block.getPartValue(part) && block.getDirection(state) == directions[structure];
+            if(found != present) fail(structure, "part " + part + (present ? " has not been placed" : " has not been removed"));
+        }
+    }
+
+    /*
+     * Not checked during the warm-up round, when stats is null.
+     * */
+    private void checkTick(long start, String phase, @Nullable Stats stats) {
+        if(!TIMING || stats == null) return;
+        long nanos = System.nanoTime() - start;
+        if(nanos > MAX_TICK_NANOS) helper.fail(String.format(Locale.ROOT, "%s: %s took %.2fms in one tick, expected at most %dms", entry.name(), phase, nanos / 1e6, MAX_TICK_NANOS / 1_000_000));
+    }
+
+    private void fail(int structure, String message) {
+        helper.fail(entry.name() + " facing " + directions[structure] + " at " + origins[structure].toShortString() + ": " + message);
+    }
+
+    /**
+     * Totals of one operation over the measured rounds.
+     * */
+    private final class Stats {
+        private final String name;
+        private long count;
+        private long nanos;
+        private long bytes;
+        private long updates;
+
+        private Stats(String name) {
+            this.name = name;
+        }
+
+        private void add(long nanos, long bytes, long updates) {
+            this.count++;
+            this.nanos += nanos;
+            this.bytes += bytes;
+            this.updates += updates;
+        }
+
+        private double perPart(long total) {
+            return count == 0 ? 0 : (double) total / count / geometry.size();
+        }
+
+        private void check(long maxNanos, long maxBytes) {
+            if(perPart(nanos) > maxNanos) helper.fail(String.format(Locale.ROOT, "%s: %s took %.0fns per part, expected at most %dns", entry.name(), name, perPart(nanos), maxNanos));
+            if(THREADS != null && perPart(bytes) > maxBytes) helper.fail(String.format(Locale.ROOT, "%s: %s allocated %.0f bytes per part, expected at most %d", entry.name(), name, perPart(bytes), maxBytes));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d %s of %d parts, %.1fus and %.0f bytes per operation, %.1f block updates per operation",
+                    count, name, geometry.size(), count == 0 ? 0 : nanos / 1e3 / count, count == 0 ? 0 : (double) bytes / count, count == 0 ? 0 : (double) updates / count);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.liukrast.multipart.benchmark;
+
+import net.liukrast.multipart.block.MultipartGeometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Defining every part and building the geometry, as done once per block when its state definition is created.
+ * */
+@State(Scope.Thread)
+public class BuilderBenchmark {
+    @Param({"2", "36", "1000", "10000"})
+    public int size;
+
+    private int[] coordinates;
+
+    @Setup
+    public void setup() {
+        coordinates = Structures.coordinates(size);
+    }
+
+    @Benchmark
+    public MultipartGeometry defineAndBuild() {
+        var builder = new Structures.Builder();
+        for(int i = 0; i < coordinates.length; i += 3) builder.define(coordinates[i], coordinates[i + 1], coordinates[i + 2]);
+        return builder.geometry();
+    }
+}
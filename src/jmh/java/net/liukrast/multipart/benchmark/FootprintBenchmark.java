@@ -0,0 +1,90 @@
+package net.liukrast.multipart.benchmark;
+
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.block.MultipartFootprint;
+import net.liukrast.multipart.block.PartStorage;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.BitSet;
+
+/**
+ * Footprint validation, as done by {@code canSurvive} (stopping at the first blocked part)
+ * and by the placement preview (collecting every blocked part).
+ * The level is an {@link InMemoryLevel} filled with grass around the structure, with one stone block inside the footprint.
+ * {@link IMultipartBlock#canSurvive} is also measured as a whole, before placement and on a complete placed structure,
+ * from the controller facing {@link Structures#direction} (see {@link Structures.Multipart}).
+ * */
+@State(Scope.Thread)
+public class FootprintBenchmark {
+    @Param({"2", "36", "1000", "10000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean facing;
+
+    @Param({"REGISTRY", "PROPERTY"})
+    public PartStorage storage;
+
+    private IMultipartBlock block;
+    private InMemoryLevel level;
+    private Direction[] directions;
+    private long origin;
+    private BlockPos originPos;
+    private BlockPos placedPos;
+    private BlockState controller;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        var direction = Structures.direction(facing);
+        var multipart = new Structures.Multipart(size, direction, storage);
+        block = multipart;
+        directions = Structures.directions(facing);
+        level = new InMemoryLevel();
+        origin = new BlockPos(8, 64, 8).asLong();
+        var geometry = block.getGeometry();
+        for(Direction each : directions) {
+            geometry.forEach(origin, each, pos -> level.set(BlockPos.offset(pos, 0, -1, 0), Blocks.GRASS_BLOCK.defaultBlockState()));
+        }
+        level.set(geometry.relative(origin, direction, size - 1), Blocks.STONE.defaultBlockState());
+        controller = multipart.controller();
+        originPos = BlockPos.of(origin);
+        placedPos = originPos.offset(0, 0, 4096);
+        long placed = placedPos.asLong();
+        for(int i = 0; i < size; i++) {
+            level.set(geometry.relative(placed, direction, i), multipart.part(i));
+        }
+    }
+
+    @Benchmark
+    public BitSet blocked() {
+        return MultipartFootprint.blocked(block, level, origin, directions[cursor++ & 3], true);
+    }
+
+    @Benchmark
+    public boolean canSurvive() {
+        return block.canSurvive(controller, level, originPos);
+    }
+
+    @Benchmark
+    public boolean survive() {
+        return block.canSurvive(controller, level, placedPos);
+    }
+
+    @Benchmark
+    public BitSet preview() {
+        return MultipartFootprint.blocked(block, level, origin, directions[cursor++ & 3], false);
+    }
+}
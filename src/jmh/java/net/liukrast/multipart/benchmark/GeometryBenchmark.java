@@ -0,0 +1,93 @@
+package net.liukrast.multipart.benchmark;
+
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.block.MultipartGeometry;
+import net.liukrast.multipart.block.PartStorage;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.state.BlockState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Part and origin lookups, as done by {@code getRelative} and {@code getOrigin},
+ * and whole structure visits through {@link IMultipartBlock#forEachElement} and {@link IMultipartBlock#forEachPacked}.
+ * Single lookups pick a different part and direction on each call, visits start from the controller,
+ * facing {@link Structures#direction} (see {@link Structures.Multipart}).
+ * */
+@State(Scope.Thread)
+public class GeometryBenchmark {
+    @Param({"2", "36", "1000", "10000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean facing;
+
+    @Param({"REGISTRY", "PROPERTY"})
+    public PartStorage storage;
+
+    private Structures.Multipart block;
+    private BlockState controller;
+    private MultipartGeometry geometry;
+    private Direction[] directions;
+    private final BlockPos origin = new BlockPos(120, 64, -340);
+    private long packedOrigin;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        block = new Structures.Multipart(size, Structures.direction(facing), storage);
+        controller = block.controller();
+        geometry = block.getGeometry();
+        directions = Structures.directions(facing);
+        packedOrigin = origin.asLong();
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) % size;
+    }
+
+    @Benchmark
+    public long relative() {
+        int part = next();
+        return geometry.relative(packedOrigin, directions[part & 3], part);
+    }
+
+    @Benchmark
+    public long origin() {
+        int part = next();
+        var direction = directions[part & 3];
+        return geometry.origin(geometry.relative(packedOrigin, direction, part), direction, part);
+    }
+
+    @Benchmark
+    public BlockPos transform() {
+        int part = next();
+        return MultipartGeometry.transform(origin, geometry.get(part), directions[part & 3], false);
+    }
+
+    @Benchmark
+    public int indexOf() {
+        int part = next();
+        var direction = directions[part & 3];
+        return geometry.indexOf(packedOrigin, direction, geometry.relative(packedOrigin, direction, part));
+    }
+
+    @Benchmark
+    public void forEachElement(Blackhole blackhole) {
+        block.forEachElement(origin, controller, blackhole::consume);
+    }
+
+    @Benchmark
+    public void forEachPacked(Blackhole blackhole) {
+        block.forEachPacked(origin, controller, blackhole::consume);
+    }
+}
@@ -0,0 +1,41 @@
+package net.liukrast.multipart.benchmark;
+
+import net.liukrast.multipart.HighlightStore;
+import net.liukrast.multipart.block.MultipartGeometry;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The store behind {@code MultipartAPI.notify} and {@code MultipartAPI.tick}:
+ * every part of a structure is highlighted, as a failed placement does, then one tick passes.
+ * Uses the same capacity and duration as {@code MultipartAPI}.
+ * */
+@State(Scope.Thread)
+public class HighlightStoreBenchmark {
+    @Param({"2", "36", "1000", "10000"})
+    public int size;
+
+    private HighlightStore store;
+    private long[] positions;
+
+    @Setup
+    public void setup() {
+        store = new HighlightStore(4096, 60);
+        positions = new long[size];
+        MultipartGeometry geometry = Structures.geometry(size);
+        long origin = BlockPos.ZERO.asLong();
+        for(int i = 0; i < size; i++) positions[i] = geometry.relative(origin, Direction.NORTH, i);
+    }
+
+    @Benchmark
+    public int notifyAndTick() {
+        for(long pos : positions) store.add(pos);
+        store.tick();
+        return store.size();
+    }
+}
@@ -0,0 +1,160 @@
+package net.liukrast.multipart.benchmark;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.Holder;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.flag.FeatureFlagSet;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.ColorResolver;
+import net.minecraft.world.level.LevelReader;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.BiomeManager;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.border.WorldBorder;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.lighting.LevelLightEngine;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Lightweight {@link LevelReader} stand-in, storing block states in a map.
+ * It has no chunks, so readers fall back to {@link #getBlockState(BlockPos)}.
+ * Anything unrelated to block states is unsupported.
+ * */
+final class InMemoryLevel implements LevelReader {
+    private final Long2ObjectOpenHashMap<BlockState> states = new Long2ObjectOpenHashMap<>();
+
+    InMemoryLevel() {
+        states.defaultReturnValue(Blocks.AIR.defaultBlockState());
+    }
+
+    void set(long pos, BlockState state) {
+        states.put(pos, state);
+    }
+
+    @Override
+    public @NotNull BlockState getBlockState(BlockPos pos) {
+        return states.get(pos.asLong());
+    }
+
+    @Override
+    public @NotNull FluidState getFluidState(@NotNull BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public @Nullable BlockEntity getBlockEntity(@NotNull BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public @Nullable ChunkAccess getChunk(int x, int z, @NotNull ChunkStatus chunkStatus, boolean requireChunk) {
+        if(requireChunk) throw new UnsupportedOperationException();
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public boolean hasChunk(int chunkX, int chunkZ) {
+        return false;
+    }
+
+    @Override
+    public int getMinBuildHeight() {
+        return -64;
+    }
+
+    @Override
+    public int getHeight() {
+        return 384;
+    }
+
+    @Override
+    public boolean isClientSide() {
+        return false;
+    }
+
+    @Override
+    public int getHeight(Heightmap.@NotNull Types heightmapType, int x, int z) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getSkyDarken() {
+        return 0;
+    }
+
+    @Override
+    public @NotNull BiomeManager getBiomeManager() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public @NotNull Holder<Biome> getUncachedNoiseBiome(int x, int y, int z) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @Deprecated
+    public int getSeaLevel() {
+        return 63;
+    }
+
+    @Override
+    public @NotNull DimensionType dimensionType() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public @NotNull RegistryAccess registryAccess() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public @NotNull FeatureFlagSet enabledFeatures() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public float getShade(@NotNull Direction direction, boolean shade) {
+        return 1.0f;
+    }
+
+    @Override
+    public @NotNull LevelLightEngine getLightEngine() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getBlockTint(@NotNull BlockPos pos, @NotNull ColorResolver colorResolver) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public @NotNull WorldBorder getWorldBorder() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public @Nullable BlockGetter getChunkForCollisions(int chunkX, int chunkZ) {
+        return null;
+    }
+
+    @Override
+    public @NotNull List<VoxelShape> getEntityCollisions(@Nullable Entity entity, @NotNull AABB collisionBox) {
+        return List.of();
+    }
+}
@@ -0,0 +1,159 @@
+package net.liukrast.multipart.benchmark;
+
+import net.liukrast.multipart.block.AbstractMultipartBlock;
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.block.MultipartGeometry;
+import net.liukrast.multipart.block.PartStorage;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.StateDefinition;
+import net.minecraft.world.level.block.state.properties.BlockStateProperties;
+import net.minecraft.world.level.block.state.properties.IntegerProperty;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Structures shared by the benchmarks.
+ * */
+final class Structures {
+    private static final Direction[] HORIZONTAL = {Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST};
+    private static final Direction[] FIXED = {Direction.NORTH, Direction.NORTH, Direction.NORTH, Direction.NORTH};
+
+    private Structures() {}
+
+    /**
+     * Relative coordinates of a structure filling a cube, as x, y, z triplets.
+     * The cube is centered on the origin horizontally, like most machines are.
+     * @param size the number of parts
+     * @return the coordinates
+     * */
+    static int[] coordinates(int size) {
+        int side = (int) Math.ceil(Math.cbrt(size));
+        int half = side / 2;
+        int[] coordinates = new int[size * 3];
+        for(int i = 0; i < size; i++) {
+            coordinates[i * 3] = i % side - half;
+            coordinates[i * 3 + 1] = i / (side * side);
+            coordinates[i * 3 + 2] = (i / side) % side - half;
+        }
+        return coordinates;
+    }
+
+    static MultipartGeometry geometry(int size) {
+        var builder = new Builder();
+        int[] coordinates = coordinates(size);
+        for(int i = 0; i < coordinates.length; i += 3) builder.define(coordinates[i], coordinates[i + 1], coordinates[i + 2]);
+        return builder.geometry();
+    }
+
+    /**
+     * @param facing whether the structure can face any horizontal direction
+     * @return four directions to cycle through, all {@link Direction#NORTH} for non-facing structures
+     * */
+    static Direction[] directions(boolean facing) {
+        return facing ? HORIZONTAL : FIXED;
+    }
+
+    /**
+     * @param facing whether the structure can face any horizontal direction
+     * @return the direction of structures which are not cycled, {@link Direction#EAST} for facing structures
+     * so their offsets are actually rotated
+     * */
+    static Direction direction(boolean facing) {
+        return facing ? Direction.EAST : Direction.NORTH;
+    }
+
+    /**
+     * Exposes the geometry built by {@link AbstractMultipartBlock.Builder}.
+     * */
+    static final class Builder extends AbstractMultipartBlock.Builder {
+        MultipartGeometry geometry() {
+            return build();
+        }
+    }
+
+    /**
+     * A multipart which is not a block, so it can be created without registries.
+     * <p>With {@link PartStorage#REGISTRY}, its states are borrowed from {@link Blocks#BAMBOO}, whose {@code age} property (0 or 1) stands for the part property:
+     * every part fits in these two values, and the controller resolves without a level.
+     * With {@link PartStorage#PROPERTY}, a state definition with a {@code part} property is created for {@link Blocks#BARRIER}, which the benchmarks never place otherwise.
+     * Every state faces the direction given to the constructor.
+     * Requires {@link net.minecraft.server.Bootstrap}.</p>
+     * */
+    static final class Multipart implements IMultipartBlock {
+        private List<BlockPos> positions;
+        private final Direction direction;
+        private final PartStorage storage;
+        private final IntegerProperty property;
+        private final @Nullable StateDefinition<Block, BlockState> states;
+
+        /**
+         * @param size the number of parts
+         * @param direction the direction of every state
+         * @param storage where the part index is stored
+         * */
+        Multipart(int size, Direction direction, PartStorage storage) {
+            this.positions = geometry(size);
+            this.direction = direction;
+            this.storage = storage;
+            if(storage == PartStorage.REGISTRY) {
+                this.property = BlockStateProperties.AGE_1;
+                this.states = null;
+            } else {
+                this.property = IntegerProperty.create("part", 0, Math.max(size - 1, 1));
+                this.states = new StateDefinition.Builder<Block, BlockState>(Blocks.BARRIER).add(property).create(Block::defaultBlockState, BlockState::new);
+            }
+        }
+
+        @Override
+        public void defineParts(AbstractMultipartBlock.Builder builder) {}
+
+        @Override
+        public List<BlockPos> getPositions() {
+            return positions;
+        }
+
+        @Override
+        public void setPositions(List<BlockPos> positions) {
+            this.positions = positions;
+        }
+
+        /**
+         * @return the state of the controller
+         * */
+        BlockState controller() {
+            return part(0);
+        }
+
+        /**
+         * @param part the part index
+         * @return the state of the part
+         * */
+        BlockState part(int part) {
+            var state = states == null ? Blocks.BAMBOO.defaultBlockState() : states.any();
+            return state.setValue(property, getPartValue(part));
+        }
+
+        @Override
+        public Direction getDirection(BlockState state) {
+            return direction;
+        }
+
+        @Override
+        public PartStorage getPartStorage() {
+            return storage;
+        }
+
+        @Override
+        public IntegerProperty getPartsProperty() {
+            return property;
+        }
+
+        @Override
+        public void setPartsProperty(IntegerProperty property) {}
+    }
+}
@@ -0,0 +1,133 @@
+package net.liukrast.multipart;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.client.renderer.LevelRenderer;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Shared code to merge highlighted positions into boxes, cull them and draw their outlines.
+ * Boxes are stored as 6 ints each: min X, Y, Z and max X, Y, Z, both inclusive.
+ * */
+@ApiStatus.Internal
+public final class HighlightBoxes {
+    /**
+     * Boxes farther than this from the camera are not drawn
+     * */
+    public static final double MAX_DISTANCE = 128;
+
+    private HighlightBoxes() {}
+
+    /**
+     * Greedy merge: positions are sorted by Y, Z and X, then each remaining position grows a box
+     * along X, Z and Y as long as every position in it belongs to the same group.
+     * @param positions the packed positions, reordered in place
+     * @param groups the group of each position, reordered in place
+     * @param size the amount of positions
+     * @param bounds receives the bounds of each box, at least {@code size * 6} long
+     * @param boxGroups receives the group of each box, at least {@code size} long
+     * @return the amount of boxes
+     * */
+    public static int merge(long[] positions, long[] groups, int size, int[] bounds, long[] boxGroups) {
+        if(size == 0) return 0;
+        Arrays.quickSort(0, size, (a, b) -> {
+            long posA = positions[a], posB = positions[b];
+            int compare = Integer.compare(BlockPos.getY(posA), BlockPos.getY(posB));
+            if(compare == 0) compare = Integer.compare(BlockPos.getZ(posA), BlockPos.getZ(posB));
+            if(compare == 0) compare = Integer.compare(BlockPos.getX(posA), BlockPos.getX(posB));
+            return compare;
+        }, (a, b) -> {
+            long pos = positions[a];
+            positions[a] = positions[b];
+            positions[b] = pos;
+            long group = groups[a];
+            groups[a] = groups[b];
+            groups[b] = group;
+        });
+        var remaining = new Long2LongOpenHashMap(size);
+        remaining.defaultReturnValue(Long.MIN_VALUE);
+        for(int i = 0; i < size; i++) remaining.put(positions[i], groups[i]);
+        int count = 0;
+        for(int i = 0; i < size; i++) {
+            long pos = positions[i];
+            long group = groups[i];
+            if(remaining.get(pos) != group) continue;
+            int x0 = BlockPos.getX(pos), y0 = BlockPos.getY(pos), z0 = BlockPos.getZ(pos);
+            int x1 = x0, y1 = y0, z1 = z0;
+            while(remaining.get(BlockPos.asLong(x1 + 1, y0, z0)) == group) x1++;
+            while(matches(remaining, group, x0, x1, y0, y0, z1 + 1, z1 + 1)) z1++;
+            while(matches(remaining, group, x0, x1, y1 + 1, y1 + 1, z0, z1)) y1++;
+            for(int y = y0; y <= y1; y++) {
+                for(int z = z0; z <= z1; z++) {
+                    for(int x = x0; x <= x1; x++) remaining.remove(BlockPos.asLong(x, y, z));
+                }
+            }
+            int j = count * 6;
+            bounds[j] = x0;
+            bounds[j + 1] = y0;
+            bounds[j + 2] = z0;
+            bounds[j + 3] = x1;
+            bounds[j + 4] = y1;
+            bounds[j + 5] = z1;
+            boxGroups[count++] = group;
+        }
+        return count;
+    }
+
+    private static boolean matches(Long2LongOpenHashMap remaining, long group, int x0, int x1, int y0, int y1, int z0, int z1) {
+        for(int y = y0; y <= y1; y++) {
+            for(int z = z0; z <= z1; z++) {
+                for(int x = x0; x <= x1; x++) {
+                    if(remaining.get(BlockPos.asLong(x, y, z)) != group) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param camPos the camera position
+     * @param frustum the frustum
+     * @param bounds the box bounds
+     * @param box the box index
+     * @return whether the box is too far or outside the frustum
+     * */
+    public static boolean isCulled(Vec3 camPos, Frustum frustum, int[] bounds, int box) {
+        int j = box * 6;
+        double minX = bounds[j], minY = bounds[j + 1], minZ = bounds[j + 2];
+        double maxX = bounds[j + 3] + 1, maxY = bounds[j + 4] + 1, maxZ = bounds[j + 5] + 1;
+        double dx = Mth.clamp(camPos.x, minX, maxX) - camPos.x;
+        double dy = Mth.clamp(camPos.y, minY, maxY) - camPos.y;
+        double dz = Mth.clamp(camPos.z, minZ, maxZ) - camPos.z;
+        return dx * dx + dy * dy + dz * dz > MAX_DISTANCE * MAX_DISTANCE || !frustum.isVisible(new AABB(minX, minY, minZ, maxX, maxY, maxZ));
+    }
+
+    /**
+     * Draws the outline of a box.
+     * @param poseStack the pose stack
+     * @param buffer the line buffer
+     * @param camPos the camera position
+     * @param bounds the box bounds
+     * @param box the box index
+     * @param red the red component
+     * @param green the green component
+     * @param blue the blue component
+     * @param alpha the alpha component
+     * */
+    public static void draw(PoseStack poseStack, VertexConsumer buffer, Vec3 camPos, int[] bounds, int box, float red, float green, float blue, float alpha) {
+        int j = box * 6;
+        LevelRenderer.renderLineBox(
+                poseStack, buffer,
+                bounds[j] - camPos.x, bounds[j + 1] - camPos.y, bounds[j + 2] - camPos.z,
+                bounds[j + 3] + 1 - camPos.x, bounds[j + 4] + 1 - camPos.y, bounds[j + 5] + 1 - camPos.z,
+                red, green, blue, alpha
+        );
+    }
+}
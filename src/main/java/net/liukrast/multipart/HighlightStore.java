@@ -0,0 +1,173 @@
+package net.liukrast.multipart;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Thread-safe store of the highlighted positions used by {@link MultipartAPI}.
+ * <p>Positions and expiry ticks are kept in a ring of parallel primitive arrays, so adding, expiring and reading entries never allocates.
+ * Expiry is an absolute tick, compared against a counter advanced by {@link #tick()}.
+ * Since every highlight lasts as long, the ring is always sorted by expiry:
+ * extending a highlight moves it to the tail, expired highlights are dropped from the head,
+ * and when the store is full the head, which is the entry closest to expiring, is replaced.</p>
+ * */
+@ApiStatus.Internal
+public final class HighlightStore {
+    private static final long REMOVED = Long.MIN_VALUE;
+    private final long[] positions;
+    private final long[] expiries;
+    private final Long2IntOpenHashMap slots;
+    private final int duration;
+    private int head;
+    private int used;
+    private int size;
+    private long time;
+    private int version;
+
+    /**
+     * Creates a new store.
+     * @param capacity the maximum amount of highlighted positions
+     * @param duration how many ticks a highlight lasts
+     * */
+    public HighlightStore(int capacity, int duration) {
+        this.positions = new long[capacity];
+        this.expiries = new long[capacity];
+        this.slots = new Long2IntOpenHashMap(capacity);
+        this.duration = duration;
+        slots.defaultReturnValue(-1);
+    }
+
+    /**
+     * Highlights a position, or extends an existing highlight.
+     * @param pos the packed position
+     * */
+    public synchronized void add(long pos) {
+        int slot = slots.remove(pos);
+        if(slot != -1) {
+            expiries[slot] = REMOVED;
+            size--;
+        }
+        if(used == positions.length) {
+            if(size < used) compact();
+            else poll();
+        }
+        slot = (head + used++) % positions.length;
+        positions[slot] = pos;
+        expiries[slot] = time + duration;
+        slots.put(pos, slot);
+        size++;
+        version++;
+    }
+
+    /**
+     * Advances the time by one tick and removes the expired highlights.
+     * */
+    public synchronized void tick() {
+        time++;
+        while(used > 0 && expiries[head] <= time) {
+            if(expiries[head] != REMOVED) version++;
+            poll();
+        }
+    }
+
+    private void poll() {
+        if(expiries[head] != REMOVED) {
+            slots.remove(positions[head]);
+            size--;
+        }
+        head = (head + 1) % positions.length;
+        used--;
+    }
+
+    /*
+     * Only called when the ring is full and holds extended highlights, so it runs at most once every capacity additions.
+     * */
+    private void compact() {
+        int count = 0;
+        for(int i = 0; i < used; i++) {
+            int slot = (head + i) % positions.length;
+            if(expiries[slot] == REMOVED) continue;
+            int target = (head + count++) % positions.length;
+            if(target == slot) continue;
+            positions[target] = positions[slot];
+            expiries[target] = expiries[slot];
+            slots.put(positions[target], target);
+        }
+        used = count;
+    }
+
+    /**
+     * Visits every highlight while holding the lock of the store, from the closest to expiring.
+     * @param visitor the visitor
+     * */
+    public synchronized void forEach(Visitor visitor) {
+        for(int i = 0; i < used; i++) {
+            int slot = (head + i) % positions.length;
+            if(expiries[slot] != REMOVED) visitor.accept(positions[slot], expiries[slot] - time);
+        }
+    }
+
+    /**
+     * Copies every highlight while holding the lock of the store, from the closest to expiring.
+     * @param positions the array receiving the packed positions, at least {@link #getCapacity()} long
+     * @param expiries the array receiving the expiry ticks, at least {@link #getCapacity()} long
+     * @return the amount of copied highlights
+     * */
+    public synchronized int copyTo(long[] positions, long[] expiries) {
+        int count = 0;
+        for(int i = 0; i < used; i++) {
+            int slot = (head + i) % this.positions.length;
+            if(this.expiries[slot] == REMOVED) continue;
+            positions[count] = this.positions[slot];
+            expiries[count++] = this.expiries[slot];
+        }
+        return count;
+    }
+
+    /**
+     * @return the current tick, which expiry ticks are compared against
+     * */
+    public synchronized long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the maximum amount of highlighted positions
+     * */
+    public int getCapacity() {
+        return positions.length;
+    }
+
+    /**
+     * @return how many ticks a highlight lasts
+     * */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the amount of highlighted positions
+     * */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return a number which changes every time highlights are added or removed
+     * */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * Visitor for {@link #forEach(Visitor)}
+     * */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param pos the packed position
+         * @param remaining the ticks left before the highlight expires
+         * */
+        void accept(long pos, long remaining);
+    }
+}
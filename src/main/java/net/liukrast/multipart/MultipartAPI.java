@@ -1,73 +1,98 @@
 package net.liukrast.multipart;
 
 import com.mojang.blaze3d.vertex.PoseStack;
-import net.minecraft.client.Camera;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.liukrast.multipart.metrics.MultipartMetrics;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.core.BlockPos;
-import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
 import org.apache.logging.log4j.util.InternalApi;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-
 /**
  * Utility class for handling temporary visualization of multipart block positions.
  *
- * <p>Use {@link #notify(BlockPos)} to request the rendering of a block highlight for a short time.</p>
+ * <p>Use {@link #notify(BlockPos)} to request the rendering of a block highlight for a short time.
+ * It can be called from any thread.</p>
  *
  * <p>Other methods are for internal use only and should not be called directly.</p>
  */
 public class MultipartAPI {
+	/**
+	 * The mod id of the library
+	 */
+	public static final String MOD_ID = "multipart_api";
 
 	private MultipartAPI() {}
 
 	/**
 	 * Requests to render a temporary red box around the given block position.
-	 * The highlight will last for 60 ticks.
+	 * The highlight will last for 60 ticks. At most 4096 positions are highlighted at once.
 	 *
 	 * @param pos the block position to highlight
 	 */
 	public static void notify(BlockPos pos) {
-		stored.put(pos, 60);
+		stored.add(pos.asLong());
 	}
 
-	private static final LinkedHashMap<BlockPos, Integer> stored = new LinkedHashMap<>();
+	private static final HighlightStore stored = new HighlightStore(4096, 60);
+
+	static {
+		MultipartMetrics.setHighlightSource(stored::size);
+	}
+
+	private static final long[] snapshotPositions = new long[stored.getCapacity()];
+	private static final long[] snapshotExpiries = new long[stored.getCapacity()];
+	private static final int[] boxBounds = new int[stored.getCapacity() * 6];
+	private static final long[] boxExpiries = new long[stored.getCapacity()];
+	private static int cachedVersion = -1;
+	private static int boxCount;
 
 	/**
 	 * Renders highlight boxes for all tracked block positions.
+	 * Adjacent positions highlighted at the same time are merged into a single box,
+	 * and boxes outside the frustum or too far from the camera are skipped.
+	 * The line buffer is fetched once per frame.
 	 * <p><b>Internal use only.</b></p>
 	 *
 	 * @param poseStack the current pose stack used for rendering
+	 * @param frustum the frustum used to cull boxes
 	 */
 	@InternalApi
-	public static void render(PoseStack poseStack) {
-		Camera camera = Minecraft.getInstance().gameRenderer.getMainCamera();
-		Vec3 camPos = camera.getPosition();
-		for(BlockPos pos : stored.keySet()) {
-			AABB box = AABB.ofSize(Vec3.atCenterOf(pos), 1, 1, 1).move(-camPos.x, -camPos.y, -camPos.z);
-
-			LevelRenderer.renderLineBox(
-					poseStack,
-					Minecraft.getInstance().renderBuffers().bufferSource().getBuffer(RenderType.lines()),
-					box,
-					1.0f, 0f, 0f, stored.get(pos) / 60f
-			);
+	public static void render(PoseStack poseStack, Frustum frustum) {
+		int version = stored.getVersion();
+		if(version != cachedVersion) {
+			cachedVersion = version;
+			int size = stored.copyTo(snapshotPositions, snapshotExpiries);
+			boxCount = HighlightBoxes.merge(snapshotPositions, snapshotExpiries, size, boxBounds, boxExpiries);
 		}
+		if(boxCount == 0) return;
+		var mc = Minecraft.getInstance();
+		Vec3 camPos = mc.gameRenderer.getMainCamera().getPosition();
+		VertexConsumer buffer = mc.renderBuffers().bufferSource().getBuffer(RenderType.lines());
+		long time = stored.getTime();
+		int drawn = 0;
+		int culled = 0;
+		for(int i = 0; i < boxCount; i++) {
+			if(HighlightBoxes.isCulled(camPos, frustum, boxBounds, i)) {
+				culled++;
+				continue;
+			}
+			HighlightBoxes.draw(poseStack, buffer, camPos, boxBounds, i, 1.0f, 0f, 0f, (boxExpiries[i] - time) / (float) stored.getDuration());
+			drawn++;
+		}
+		var profiler = mc.getProfiler();
+		profiler.incrementCounter("boxes_drawn", drawn);
+		profiler.incrementCounter("boxes_culled", culled);
 	}
 
 	/**
-	 * Decrements the remaining duration for each highlight and removes expired entries.
+	 * Advances the highlight clock and removes expired entries.
 	 * <p><b>Internal use only.</b></p>
 	 */
 	@InternalApi
 	public static void tick() {
-		for(BlockPos pos : new ArrayList<>(stored.keySet())) {
-			int value = stored.get(pos);
-			if(value <= 0) stored.remove(pos);
-			else stored.put(pos, value - 1);
-		}
+		stored.tick();
 	}
-}
\ No newline at end of file
+}
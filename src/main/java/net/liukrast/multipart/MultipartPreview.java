@@ -0,0 +1,133 @@
+package net.liukrast.multipart;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.block.MultipartFootprint;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.item.BlockItem;
+import net.minecraft.world.item.context.BlockPlaceContext;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.BlockHitResult;
+import net.minecraft.world.phys.HitResult;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Client-side ghost preview of the footprint of the multipart held by the player, with blocked parts shown in red.
+ * <p>The footprint is only validated again when the targeted position or the placement state changes,
+ * or when a block inside the cached footprint changes. Between those events, rendering reuses the cached boxes.</p>
+ * <p><b>Internal use only.</b></p>
+ * */
+@ApiStatus.Internal
+public final class MultipartPreview {
+    private static final LongOpenHashSet footprint = new LongOpenHashSet();
+    private static long targetPos;
+    private static BlockState targetState;
+    private static boolean dirty;
+    private static long[] positions = new long[0];
+    private static long[] groups = new long[0];
+    private static int[] bounds = new int[0];
+    private static long[] boxGroups = new long[0];
+    private static int boxCount;
+
+    private MultipartPreview() {}
+
+    /**
+     * Checks whether the placement target changed, and validates the footprint again if needed.
+     * */
+    public static void tick() {
+        var mc = Minecraft.getInstance();
+        var player = mc.player;
+        var level = mc.level;
+        if(player == null || level == null || !(mc.hitResult instanceof BlockHitResult hit) || hit.getType() != HitResult.Type.BLOCK) {
+            clear();
+            return;
+        }
+        InteractionHand hand = null;
+        BlockItem item = null;
+        for(InteractionHand hand1 : InteractionHand.values()) {
+            if(player.getItemInHand(hand1).getItem() instanceof BlockItem blockItem && blockItem.getBlock() instanceof IMultipartBlock multipart && multipart.showPlacementPreview()) {
+                hand = hand1;
+                item = blockItem;
+                break;
+            }
+        }
+        if(item == null) {
+            clear();
+            return;
+        }
+        var context = new BlockPlaceContext(player, hand, player.getItemInHand(hand), hit);
+        var state = context.canPlace() ? item.getBlock().getStateForPlacement(context) : null;
+        if(state == null) {
+            clear();
+            return;
+        }
+        long pos = context.getClickedPos().asLong();
+        if(!dirty && pos == targetPos && state == targetState) return;
+        targetPos = pos;
+        targetState = state;
+        dirty = false;
+        update(level, (IMultipartBlock) item.getBlock(), state);
+    }
+
+    private static void update(ClientLevel level, IMultipartBlock block, BlockState state) {
+        footprint.clear();
+        boxCount = 0;
+        int part = block.getPartIndex(level, BlockPos.of(targetPos), state);
+        if(part == -1) return;
+        var direction = block.getDirection(state);
+        var geometry = block.getGeometry();
+        long origin = geometry.origin(targetPos, direction, part);
+        var blocked = MultipartFootprint.blocked(block, level, origin, direction, false);
+        int size = geometry.size();
+        if(positions.length < size) {
+            positions = new long[size];
+            groups = new long[size];
+            bounds = new int[size * 6];
+            boxGroups = new long[size];
+        }
+        for(int i = 0; i < size; i++) {
+            positions[i] = geometry.relative(origin, direction, i);
+            groups[i] = blocked.get(i) ? 1 : 0;
+            footprint.add(positions[i]);
+        }
+        boxCount = HighlightBoxes.merge(positions, groups, size, bounds, boxGroups);
+    }
+
+    private static void clear() {
+        if(targetState == null) return;
+        targetState = null;
+        footprint.clear();
+        boxCount = 0;
+    }
+
+    /**
+     * Marks the cached footprint as outdated if the changed block is part of it.
+     * @param pos the position of the changed block
+     * */
+    public static void onBlockChanged(BlockPos pos) {
+        if(footprint.contains(pos.asLong())) dirty = true;
+    }
+
+    /**
+     * Renders the cached preview.
+     * @param poseStack the current pose stack used for rendering
+     * @param frustum the frustum used to cull boxes
+     * */
+    public static void render(PoseStack poseStack, Frustum frustum) {
+        if(boxCount == 0) return;
+        var mc = Minecraft.getInstance();
+        var camPos = mc.gameRenderer.getMainCamera().getPosition();
+        var buffer = mc.renderBuffers().bufferSource().getBuffer(RenderType.lines());
+        for(int i = 0; i < boxCount; i++) {
+            if(HighlightBoxes.isCulled(camPos, frustum, bounds, i)) continue;
+            if(boxGroups[i] == 1) HighlightBoxes.draw(poseStack, buffer, camPos, bounds, i, 1.0f, 0f, 0f, 0.8f);
+            else HighlightBoxes.draw(poseStack, buffer, camPos, bounds, i, 1.0f, 1.0f, 1.0f, 0.4f);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package net.liukrast.multipart.block;
+
+import net.minecraft.core.Direction;
+import net.minecraft.world.item.context.BlockPlaceContext;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.DirectionalBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.StateDefinition;
+import net.minecraft.world.level.block.state.properties.DirectionProperty;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Abstract base class for multipart blocks facing any of the six directions, like vertical pipes or drills.
+ * Extends {@link AbstractMultipartBlock} and adds full orientation support.
+ * <p>Parts are defined facing {@link Direction#NORTH}, like for {@link AbstractFacingMultipartBlock}.
+ * Facing {@link Direction#DOWN} tilts the structure forwards, so its top faces {@link Direction#NORTH},
+ * and facing {@link Direction#UP} tilts it backwards, so its top faces {@link Direction#SOUTH}.</p>
+ */
+@SuppressWarnings({"unused", "deprecation"})
+public abstract class AbstractDirectionalMultipartBlock extends AbstractMultipartBlock {
+    /**
+     * The facing direction property (NORTH, SOUTH, EAST, WEST, UP, DOWN).
+     */
+    public static final DirectionProperty FACING = DirectionalBlock.FACING;
+
+    /**
+     * Constructs a new directional multipart block.
+     * @param properties the block properties.
+     */
+    public AbstractDirectionalMultipartBlock(Properties properties) {
+        super(properties);
+    }
+
+    /**
+     * Returns the facing direction of the block.
+     * @param state the current block state.
+     * @return the direction the block is facing.
+     */
+    @Override
+    public @NotNull Direction getDirection(BlockState state) {
+        return state.getValue(FACING);
+    }
+
+    @Override
+    public @Nullable BlockState getStateForPlacement(BlockPlaceContext context) {
+        return defaultBlockState().setValue(FACING, context.getNearestLookingDirection().getOpposite());
+    }
+
+    @Override
+    protected void createBlockStateDefinition(StateDefinition.@NotNull Builder<Block, BlockState> builder) {
+        super.createBlockStateDefinition(builder);
+        builder.add(FACING);
+    }
+
+    @Override
+    public BlockState setDirection(BlockState state, Direction direction) {
+        return state.setValue(FACING, direction);
+    }
+}
@@ -4,8 +4,6 @@ import net.minecraft.core.Direction;
 import net.minecraft.world.item.context.BlockPlaceContext;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.HorizontalDirectionalBlock;
-import net.minecraft.world.level.block.Mirror;
-import net.minecraft.world.level.block.Rotation;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.DirectionProperty;
@@ -54,13 +52,8 @@ public abstract class AbstractFacingMultipartBlock extends AbstractMultipartBloc
     }
 
     @Override
-    protected @NotNull BlockState mirror(@NotNull BlockState state, Mirror mirror) {
-        return rotate(state, mirror.getRotation(state.getValue(FACING)));
-    }
-
-    @Override
-    protected @NotNull BlockState rotate(BlockState state, Rotation rotation) {
-        return state.setValue(FACING, rotation.rotate(state.getValue(FACING)));
+    public BlockState setDirection(BlockState state, Direction direction) {
+        return state.setValue(FACING, direction);
     }
 }
 
@@ -1,20 +1,25 @@
 package net.liukrast.multipart.block;
 
-import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.LevelAccessor;
 import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Mirror;
+import net.minecraft.world.level.block.Rotation;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.IntegerProperty;
+import net.minecraft.world.phys.shapes.CollisionContext;
+import net.minecraft.world.phys.shapes.VoxelShape;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,6 +32,7 @@ import java.util.List;
 public abstract class AbstractMultipartBlock extends Block implements IMultipartBlock {
     private List<BlockPos> positions;
     private IntegerProperty property;
+    private MultipartShapes shapes;
 
     /**
      * Constructor for the block.
@@ -57,6 +63,22 @@ public abstract class AbstractMultipartBlock extends Block implements IMultipart
         this.property = property;
     }
 
+    @Override
+    public MultipartShapes getPartShapes() {
+        return shapes;
+    }
+
+    @Override
+    public void setPartShapes(MultipartShapes shapes) {
+        this.shapes = shapes;
+    }
+
+    @Override
+    protected @NotNull VoxelShape getShape(@NotNull BlockState state, @NotNull BlockGetter level, @NotNull BlockPos pos, @NotNull CollisionContext context) {
+        var shape = getPartShape(level, pos, state);
+        return shape != null ? shape : super.getShape(state, level, pos, context);
+    }
+
     @Override
     public void setPlacedBy(@NotNull Level level, @NotNull BlockPos pos, @NotNull BlockState state, LivingEntity placer, @NotNull ItemStack stack) {
         IMultipartBlock.super.setPlacedBy(level, pos, state, placer, stack);
@@ -77,11 +99,22 @@ public abstract class AbstractMultipartBlock extends Block implements IMultipart
         IMultipartBlock.super.destroy(level, pos, state);
     }
 
+    @Override
+    protected @NotNull BlockState rotate(@NotNull BlockState state, @NotNull Rotation rotation) {
+        return rotate$multipart(state, rotation);
+    }
+
+    @Override
+    protected @NotNull BlockState mirror(@NotNull BlockState state, @NotNull Mirror mirror) {
+        return mirror$multipart(state, mirror);
+    }
+
     /**
      * Builder to define relative positions of multipart block parts.
      */
     public static class Builder {
-        private final List<BlockPos> positions = new ArrayList<>();
+        private final LongOpenHashSet defined = new LongOpenHashSet();
+        private final IntArrayList coordinates = new IntArrayList();
         /**
          * Main constructor for Builder.
          * You should not use this.
@@ -100,20 +133,92 @@ public abstract class AbstractMultipartBlock extends Block implements IMultipart
          */
         @SuppressWarnings("UnusedReturnValue")
         public Builder define(int x, int y, int z) {
-            var pos = new BlockPos(x,y,z);
-            if(positions.contains(pos)) throw new IllegalCallerException(String.format("Position [%s, %s, %s] is already defined", x, y, z));
-            positions.add(pos);
+            if(!defined.add(BlockPos.asLong(x, y, z))) throw new IllegalCallerException(String.format("Position [%s, %s, %s] is already defined", x, y, z));
+            coordinates.add(x);
+            coordinates.add(y);
+            coordinates.add(z);
+            return this;
+        }
+
+        /**
+         * Defines every position of a box, corners included.
+         * Parts are added iterating X, then Y, then Z, like nested for loops would.
+         * @param x0 first corner X coordinate.
+         * @param y0 first corner Y coordinate.
+         * @param z0 first corner Z coordinate.
+         * @param x1 second corner X coordinate.
+         * @param y1 second corner Y coordinate.
+         * @param z1 second corner Z coordinate.
+         * @return the builder instance for chaining.
+         * @throws IllegalCallerException if any position is already defined.
+         */
+        @SuppressWarnings("UnusedReturnValue")
+        public Builder defineBox(int x0, int y0, int z0, int x1, int y1, int z1) {
+            int minX = Math.min(x0, x1), minY = Math.min(y0, y1), minZ = Math.min(z0, z1);
+            int maxX = Math.max(x0, x1), maxY = Math.max(y0, y1), maxZ = Math.max(z0, z1);
+            int count = (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+            defined.ensureCapacity(defined.size() + count);
+            coordinates.ensureCapacity(coordinates.size() + count * 3);
+            for(int x = minX; x <= maxX; x++) {
+                for(int y = minY; y <= maxY; y++) {
+                    for(int z = minZ; z <= maxZ; z++) {
+                        define(x, y, z);
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Defines every given position, in iteration order.
+         * @param positions the relative positions.
+         * @return the builder instance for chaining.
+         * @throws IllegalCallerException if any position is already defined.
+         */
+        @SuppressWarnings("UnusedReturnValue")
+        public Builder defineAll(Iterable<BlockPos> positions) {
+            for(BlockPos pos : positions) define(pos.getX(), pos.getY(), pos.getZ());
+            return this;
+        }
+
+        /**
+         * Defines a horizontal layer from a text mask.
+         * Each row moves one block on the Z axis, each character one block on the X axis.
+         * Spaces and dots are skipped, any other character defines a part.
+         * <pre>{@code
+         * builder.defineLayer(0, 0, 0,
+         *         "###",
+         *         "#.#",
+         *         "###");
+         * }</pre>
+         * @param x X coordinate of the first character of each row.
+         * @param y Y coordinate of the layer.
+         * @param z Z coordinate of the first row.
+         * @param rows the rows of the mask.
+         * @return the builder instance for chaining.
+         * @throws IllegalCallerException if any position is already defined.
+         */
+        @SuppressWarnings("UnusedReturnValue")
+        public Builder defineLayer(int x, int y, int z, String... rows) {
+            for(int row = 0; row < rows.length; row++) {
+                var line = rows[row];
+                for(int column = 0; column < line.length(); column++) {
+                    char c = line.charAt(column);
+                    if(c == ' ' || c == '.') continue;
+                    define(x + column, y, z + row);
+                }
+            }
             return this;
         }
 
         /**
          * Internal code. Do not use.
-         * @return a list of block positions
+         * @return the geometry of the defined positions
          * */
         @ApiStatus.Internal
-        protected List<BlockPos> build() {
-            if(positions.isEmpty()) throw new IllegalStateException("The multipart builder should not be empty");
-            return ImmutableList.copyOf(positions);
+        protected MultipartGeometry build() {
+            if(coordinates.isEmpty()) throw new IllegalStateException("The multipart builder should not be empty");
+            return MultipartGeometry.ofLocal(coordinates.toIntArray());
         }
     }
 }
@@ -1,22 +1,30 @@
 package net.liukrast.multipart.block;
 
 import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.level.MultipartRegistry;
+import net.liukrast.multipart.metrics.MultipartMetrics;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LevelAccessor;
 import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Mirror;
+import net.minecraft.world.level.block.Rotation;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.IntegerProperty;
+import net.minecraft.world.phys.shapes.VoxelShape;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * Unimplemented version of {@link AbstractMultipartBlock}. You will have to introduce
@@ -38,6 +46,85 @@ public interface IMultipartBlock {
         return Direction.NORTH;
     }
 
+    /**
+     * Gives the same state, facing another direction. Used when structures are rotated or mirrored.
+     * @param state the block state
+     * @param direction the new direction
+     * @return the state facing the direction (default the same state, for blocks which always face NORTH).
+     * */
+    default BlockState setDirection(BlockState state, Direction direction) {
+        return state;
+    }
+
+    /**
+     * Decides how parts are written into the level when the multipart is placed or destroyed.
+     * Override and return {@link UpdateMode#BATCHED} to send a single round of neighbor updates for the whole structure,
+     * if your block and its neighbors do not rely on each part being updated on its own.
+     * @return the update mode (default {@link UpdateMode#PER_PART}).
+     * */
+    default UpdateMode getUpdateMode() {
+        return UpdateMode.PER_PART;
+    }
+
+    /**
+     * Whether placed structures of this block are tracked by the {@link MultipartRegistry} of the level,
+     * making part-to-origin and origin-to-parts lookups O(1) at the cost of some memory.
+     * Always needed by {@link PartStorage#REGISTRY} blocks.
+     * @return whether to use the registry (default true only for {@link PartStorage#REGISTRY} blocks).
+     * */
+    default boolean useRegistry() {
+        return getPartStorage() == PartStorage.REGISTRY;
+    }
+
+    /**
+     * Decides where the part index is stored. This is read while the block state definition is created,
+     * so it must return a constant and not depend on fields of your block.
+     * @return the part storage (default {@link PartStorage#PROPERTY}).
+     * */
+    default PartStorage getPartStorage() {
+        return PartStorage.PROPERTY;
+    }
+
+    /**
+     * Gives the value of the {@code part} property used by a part.
+     * @param part the part index
+     * @return the property value
+     * */
+    default int getPartValue(int part) {
+        return getPartStorage() == PartStorage.REGISTRY ? Math.min(part, 1) : part;
+    }
+
+    /**
+     * Gives the block state of a part.
+     * @param state any state of this multipart
+     * @param part the part index
+     * @return the same state, for the given part
+     * */
+    default BlockState getStateForPart(BlockState state, int part) {
+        return state.setValue(getPartsProperty(), getPartValue(part));
+    }
+
+    /**
+     * Gives the part index of a block of this multipart.
+     * With {@link PartStorage#PROPERTY} this is the value of the {@code part} property.
+     * With {@link PartStorage#REGISTRY} the index of any part but the controller is resolved through the level.
+     * @param level the level, may be null for {@link PartStorage#PROPERTY} blocks or for the controller
+     * @param pos the position of the block
+     * @param state the state of the block
+     * @return the part index, or {@code -1} if it could not be resolved, which includes a missing level
+     * */
+    default int getPartIndex(@Nullable BlockGetter level, BlockPos pos, BlockState state) {
+        int value = state.getValue(getPartsProperty());
+        if(getPartStorage() == PartStorage.PROPERTY || value == 0) return value;
+        if(level == null) return -1;
+        if(level instanceof Level level1) {
+            var registry = MultipartRegistry.get(level1);
+            var instance = registry.getByPart(pos.asLong());
+            if(instance != null && instance.block() == this && instance.direction() == getDirection(state)) return registry.getPartIndex(pos.asLong());
+        }
+        return MultipartRegistry.locate(this, level, pos, state);
+    }
+
     /**
      * It should not be used anywhere, only overwritten;
      * If you're trying to access the size use {@link IMultipartBlock#size()}
@@ -53,6 +140,15 @@ public interface IMultipartBlock {
     @ApiStatus.OverrideOnly
     void setPositions(List<BlockPos> positions);
 
+    /**
+     * Gives you the geometry of this multipart, which holds the precomputed world offsets of every part.
+     * If your implementation stores the positions in a different list, the geometry is built once and cached for this block.
+     * @return the geometry of this multipart
+     * */
+    default MultipartGeometry getGeometry() {
+        return MultipartGeometry.of(this);
+    }
+
     /**
      * Gives you the IntegerProperty of this precise multipart block
      * @return the IntegerProperty associated with the parts.
@@ -77,13 +173,26 @@ public interface IMultipartBlock {
      * @param stack the item stack used by the placer
      * */
     default void setPlacedBy(@NotNull Level level, BlockPos pos, @NotNull BlockState state, LivingEntity placer, @NotNull ItemStack stack) {
-        var direction = getDirection(state);
-        var positions = getPositions();
-        var statePos = positions.get(state.getValue(getPartsProperty()));
-        var origin = pos.relative(direction, statePos.getZ()).relative(Direction.UP, -statePos.getY()).relative(direction.getCounterClockWise(), -statePos.getX());
-        for(int i = 0; i < positions.size(); i++) {
-            var pos1 = positions.get(i);
-            level.setBlock(origin.relative(direction, -pos1.getZ()).relative(Direction.UP, pos1.getY()).relative(direction.getCounterClockWise(), pos1.getX()), state.setValue(getPartsProperty(), i), 3);
+        long start = MultipartMetrics.begin(level, this);
+        int parts = -1;
+        try {
+            var direction = getDirection(state);
+            var geometry = getGeometry();
+            int part = getPartIndex(level, pos, state);
+            if(part == -1) return;
+            long origin = geometry.origin(pos.asLong(), direction, part);
+            if(useRegistry() && (!level.isClientSide() || getPartStorage() == PartStorage.REGISTRY)) MultipartRegistry.get(level).track(this, origin, direction);
+            if(cacheSurvival()) MultipartRegistry.get(level).getSurvivalCache().forget(origin);
+            if(getUpdateMode() == UpdateMode.BATCHED) {
+                parts = MultipartUpdates.place(this, level, origin, direction, state, part);
+                return;
+            }
+            for(int i = 0; i < geometry.size(); i++) {
+                level.setBlock(BlockPos.of(geometry.relative(origin, direction, i)), getStateForPart(state, i), 3);
+            }
+            parts = geometry.size();
+        } finally {
+            MultipartMetrics.placed(level, this, start, parts);
         }
     }
 
@@ -95,7 +204,7 @@ public interface IMultipartBlock {
      * @return the origin position in the world.
      */
     default BlockPos getOrigin(BlockPos pos, BlockPos statePos, Direction direction) {
-        return pos.relative(direction, statePos.getZ()).relative(Direction.UP, -statePos.getY()).relative(direction.getCounterClockWise(), -statePos.getX());
+        return MultipartGeometry.transform(pos, statePos, direction, true);
     }
 
     /**
@@ -106,25 +215,112 @@ public interface IMultipartBlock {
      * @return the relative position in the world.
      */
     default BlockPos getRelative(BlockPos pos, BlockPos statePos, Direction direction) {
-        return pos.relative(direction, -statePos.getZ()).relative(Direction.UP, statePos.getY()).relative(direction.getCounterClockWise(), statePos.getX());
+        return MultipartGeometry.transform(pos, statePos, direction, false);
     }
 
     /**
      * Performs an operation on every part of the multipart block.
+     * Equivalent to {@link #forEachElement(BlockGetter, BlockPos, BlockState, Consumer)} without a level,
+     * which visits nothing for the non-controller parts of {@link PartStorage#REGISTRY} blocks.
      * @param pos the block position.
      * @param state the block state.
      * @param consumer the operation to perform on each part position.
      */
     @SuppressWarnings("unused")
     default void forEachElement(BlockPos pos, BlockState state, Consumer<BlockPos> consumer) {
+        forEachElement(null, pos, state, consumer);
+    }
+
+    /**
+     * Performs an operation on every part of the multipart block.
+     * @param level the level, needed to resolve the non-controller parts of {@link PartStorage#REGISTRY} blocks.
+     * @param pos the block position.
+     * @param state the block state.
+     * @param consumer the operation to perform on each part position, not called if the part could not be resolved.
+     */
+    default void forEachElement(@Nullable BlockGetter level, BlockPos pos, BlockState state, Consumer<BlockPos> consumer) {
+        int part = getPartIndex(level, pos, state);
+        if(part == -1) return;
         var direction = getDirection(state);
-        var statePos = getPositions().get(state.getValue(getPartsProperty()));
-        var origin = getOrigin(pos, statePos, direction);
-        for(BlockPos temp : getPositions()) {
-            consumer.accept(getRelative(origin, temp, direction));
+        var geometry = getGeometry();
+        long origin = geometry.origin(pos.asLong(), direction, part);
+        for(int i = 0; i < geometry.size(); i++) {
+            consumer.accept(BlockPos.of(geometry.relative(origin, direction, i)));
         }
     }
 
+    /**
+     * Gives the packed position of every part of the multipart block, without allocating any {@link BlockPos}.
+     * Equivalent to {@link #forEachPacked(BlockGetter, BlockPos, BlockState, LongConsumer)} without a level,
+     * which visits nothing for the non-controller parts of {@link PartStorage#REGISTRY} blocks.
+     * @param pos the block position.
+     * @param state the block state.
+     * @param consumer the operation to perform on each packed part position.
+     */
+    @SuppressWarnings("unused")
+    default void forEachPacked(BlockPos pos, BlockState state, LongConsumer consumer) {
+        forEachPacked(null, pos, state, consumer);
+    }
+
+    /**
+     * Gives the packed position of every part of the multipart block, without allocating any {@link BlockPos}.
+     * Use {@link BlockPos#getX(long)}, {@link BlockPos#getY(long)} and {@link BlockPos#getZ(long)} to read them.
+     * @param level the level, needed to resolve the non-controller parts of {@link PartStorage#REGISTRY} blocks.
+     * @param pos the block position.
+     * @param state the block state.
+     * @param consumer the operation to perform on each packed part position, not called if the part could not be resolved.
+     */
+    default void forEachPacked(@Nullable BlockGetter level, BlockPos pos, BlockState state, LongConsumer consumer) {
+        int part = getPartIndex(level, pos, state);
+        if(part == -1) return;
+        var direction = getDirection(state);
+        var geometry = getGeometry();
+        geometry.forEach(geometry.origin(pos.asLong(), direction, part), direction, consumer);
+    }
+
+    /**
+     * Visits the parts of the multipart block in index order, reusing a single mutable position.
+     * The visit stops as soon as the visitor returns {@code true}.
+     * @param pos the block position.
+     * @param state the block state.
+     * @param visitor the visitor, receiving the part index and its position.
+     * @return the index of the first part accepted by the visitor, or {@code -1} if none was.
+     */
+    default int findPart(BlockPos pos, BlockState state, PartVisitor visitor) {
+        return findPart(null, pos, state, visitor);
+    }
+
+    /**
+     * Same as {@link #findPart(BlockPos, BlockState, PartVisitor)},
+     * but also works for {@link PartStorage#REGISTRY} blocks, whose parts can only be resolved through the level.
+     * @param level the level, may be null for {@link PartStorage#PROPERTY} blocks.
+     * @param pos the block position.
+     * @param state the block state.
+     * @param visitor the visitor, receiving the part index and its position.
+     * @return the index of the first part accepted by the visitor, or {@code -1} if none was or the part could not be resolved.
+     */
+    default int findPart(@Nullable BlockGetter level, BlockPos pos, BlockState state, PartVisitor visitor) {
+        int part = getPartIndex(level, pos, state);
+        if(part == -1) return -1;
+        var direction = getDirection(state);
+        var geometry = getGeometry();
+        var origin = geometry.origin(new BlockPos.MutableBlockPos(), pos, direction, part);
+        return geometry.find(origin, direction, visitor);
+    }
+
+    /**
+     * Checks whether any part of the multipart block matches, stopping at the first match.
+     * For example, {@code anyPart(pos, state, (part, partPos) -> level.hasNeighborSignal(partPos))} tells if any part is powered.
+     * @param pos the block position.
+     * @param state the block state.
+     * @param visitor the check to perform on each part.
+     * @return whether any part matched.
+     */
+    @SuppressWarnings("unused")
+    default boolean anyPart(BlockPos pos, BlockState state, PartVisitor visitor) {
+        return findPart(pos, state, visitor) != -1;
+    }
+
     /**
      * Boilerplate method to create the blockstate definition.
      * @param builder the block state builder
@@ -133,30 +329,174 @@ public interface IMultipartBlock {
         var builder1 = new AbstractMultipartBlock.Builder();
         defineParts(builder1);
         setPositions(builder1.build());
-        setPartsProperty(IntegerProperty.create("part", 0, size()-1));
+        setPartsProperty(IntegerProperty.create("part", 0, getPartStorage() == PartStorage.REGISTRY ? 1 : size()-1));
         builder.add(getPartsProperty());
+        var shape = getStructureShape();
+        if(shape != null && getPartStorage() == PartStorage.REGISTRY) throw new IllegalStateException("Structure shapes are not supported by blocks with registry part storage");
+        setPartShapes(shape == null ? null : MultipartShapes.of(getGeometry(), shape));
+    }
+
+    /**
+     * Boilerplate method to override {@link net.minecraft.world.level.block.state.BlockBehaviour#rotate(BlockState, Rotation)}.
+     * The direction is rotated, and the part index is remapped so the rotated structure stays whole,
+     * for blocks that always face NORTH as well when their structure is symmetric.
+     * {@link PartStorage#REGISTRY} parts are only rotated, since the index of their fillers is not stored in the state.
+     * @param state the block state
+     * @param rotation the rotation
+     * @return the rotated state, or the state with only its direction rotated if the structure can't be rotated
+     * */
+    default BlockState rotate$multipart(BlockState state, Rotation rotation) {
+        var from = getDirection(state);
+        var rotated = setDirection(state, rotation.rotate(from));
+        if(getPartStorage() == PartStorage.REGISTRY) return rotated;
+        int part = getGeometry().remap(state.getValue(getPartsProperty()), from, getDirection(rotated), rotation, Mirror.NONE);
+        return part == -1 ? rotated : rotated.setValue(getPartsProperty(), part);
+    }
+
+    /**
+     * Boilerplate method to override {@link net.minecraft.world.level.block.state.BlockBehaviour#mirror(BlockState, Mirror)}.
+     * The direction is mirrored, and the part index is remapped so the mirrored structure stays whole,
+     * which only works if the structure is symmetric.
+     * {@link PartStorage#REGISTRY} parts are only mirrored, since the index of their fillers is not stored in the state.
+     * @param state the block state
+     * @param mirror the mirror
+     * @return the mirrored state, or the state with only its direction mirrored if the structure can't be mirrored
+     * */
+    default BlockState mirror$multipart(BlockState state, Mirror mirror) {
+        var from = getDirection(state);
+        var mirrored = setDirection(state, mirror.mirror(from));
+        if(getPartStorage() == PartStorage.REGISTRY) return mirrored;
+        int part = getGeometry().remap(state.getValue(getPartsProperty()), from, getDirection(mirrored), Rotation.NONE, mirror);
+        return part == -1 ? mirrored : mirrored.setValue(getPartsProperty(), part);
+    }
+
+    /**
+     * The shape of the whole structure, facing {@link Direction#NORTH} and relative to the origin.
+     * It is sliced into one shape per part and direction when the block state definition is created,
+     * so it must return a constant and not depend on fields of your block.
+     * Parts not covered by the shape have an empty shape.
+     * <p>Not supported with {@link PartStorage#REGISTRY}, creating the block state definition fails if a shape is returned:
+     * shapes are cached per state without a level, where the index of a filler can't be resolved.
+     * Override {@code getShape} and resolve the part yourself instead.</p>
+     * @return the shape of the structure, or null to keep the shapes of the block (default null).
+     * */
+    default @Nullable VoxelShape getStructureShape() {
+        return null;
+    }
+
+    /**
+     * Gives you the shapes sliced from {@link #getStructureShape()}.
+     * If your implementation does not store them, they are sliced again on each call.
+     * @return the shapes of each part, or null if the block has no structure shape
+     * */
+    default @Nullable MultipartShapes getPartShapes() {
+        var shape = getStructureShape();
+        return shape == null ? null : MultipartShapes.of(getGeometry(), shape);
+    }
+
+    /**
+     * Internally sets the shapes of each part. It should not be used anywhere, only overwritten
+     * @param shapes the shapes the API is trying to set, which your code can store internally. See {@link AbstractMultipartBlock#shapes}
+     * */
+    @ApiStatus.OverrideOnly
+    default void setPartShapes(@Nullable MultipartShapes shapes) {}
+
+    /**
+     * Boilerplate method to call from {@link net.minecraft.world.level.block.state.BlockBehaviour#getShape(BlockState, BlockGetter, BlockPos, net.minecraft.world.phys.shapes.CollisionContext)}.
+     * Collision and occlusion shapes are derived from it by default.
+     * @param level the level
+     * @param pos the position of the part
+     * @param state the state of the part
+     * @return the shape of the part, or null if the block has no structure shape
+     * */
+    default @Nullable VoxelShape getPartShape(BlockGetter level, BlockPos pos, BlockState state) {
+        var shapes = getPartShapes();
+        if(shapes == null || getPartStorage() != PartStorage.PROPERTY) return null;
+        return shapes.get(getDirection(state), state.getValue(getPartsProperty()));
     }
 
     /**
      * Boilerplate method to override {@link net.minecraft.world.level.block.state.BlockBehaviour#canSurvive(BlockState, LevelReader, BlockPos)}
+     * <p>When the block is not in the level yet, tells whether every position of the footprint can be replaced.
+     * When it is already placed, tells whether every part of the structure is still in place.</p>
      * @param state the blockstate
      * @param level the level
      * @param pos the block pos
      * @return whether the block can survive or not at that position. Will check for all other blocks of the multipart
      * */
     default boolean canSurvive(@NotNull BlockState state, @NotNull LevelReader level, @NotNull BlockPos pos) {
-        var direction = getDirection(state);
-        var statePos = getPositions().get(state.getValue(getPartsProperty()));
-        var origin = getOrigin(pos, statePos, direction);
-        boolean bl = true;
-        for (BlockPos temp : getPositions()) {
-            var pos1 = getRelative(origin, temp, direction);
-            var state1 = level.getBlockState(pos1);
-            if (state1.canBeReplaced()) continue;
-            if(level.isClientSide()) MultipartAPI.notify(pos1);
-            bl = false;
+        long start = MultipartMetrics.begin(level, this);
+        int reads = 0;
+        try {
+            var direction = getDirection(state);
+            var geometry = getGeometry();
+            int part = getPartIndex(level, pos, state);
+            if(part == -1) return false;
+            long origin = geometry.origin(pos.asLong(), direction, part);
+            if(level.getBlockState(pos).is(state.getBlock())) {
+                if(cacheSurvival() && level instanceof Level level1) {
+                    var cache = MultipartRegistry.get(level1).getSurvivalCache();
+                    if(start != MultipartMetrics.NOT_RECORDED) reads = cache.getPendingReads(origin, geometry.size());
+                    return cache.test(this, level, origin, direction, state.getBlock());
+                }
+                var missing = MultipartFootprint.missing(this, level, origin, direction, state.getBlock(), true);
+                reads = missing.isEmpty() ? geometry.size() : geometry.buckets(direction).ranks()[missing.nextSetBit(0)] + 1;
+                return missing.isEmpty();
+            }
+            boolean highlight = level.isClientSide();
+            var blocked = MultipartFootprint.blocked(this, level, origin, direction, !highlight);
+            reads = blocked.isEmpty() || highlight ? geometry.size() : geometry.buckets(direction).ranks()[blocked.nextSetBit(0)] + 1;
+            if(blocked.isEmpty()) return true;
+            if(highlight) {
+                for(int i = blocked.nextSetBit(0); i >= 0; i = blocked.nextSetBit(i + 1)) {
+                    MultipartAPI.notify(BlockPos.of(geometry.relative(origin, direction, i)));
+                }
+            }
+            return false;
+        } finally {
+            MultipartMetrics.survival(level, this, start, reads);
         }
-        return bl;
+    }
+
+    /**
+     * Whether a ghost preview of the footprint is shown while a player holds this block, with blocked parts in red.
+     * @return whether to show the preview (default true).
+     * */
+    default boolean showPlacementPreview() {
+        return true;
+    }
+
+    /**
+     * Whether the models of the whole structure are baked together, into one table of quads per part and face.
+     * Each part still renders its own quads, from its own position and culled against its own neighbors,
+     * so faces shared by two parts are culled and missing parts leave no floating faces.
+     * The merged model is built from the model of each part state, so blockstates are generated as usual.
+     * <p>Meant for static structures: quads are baked once per controller state and render type.
+     * Only supported with {@link PartStorage#PROPERTY}, ignored otherwise.</p>
+     * @return whether to render a merged model (default false).
+     * */
+    default boolean renderMerged() {
+        return false;
+    }
+
+    /**
+     * Decides what the {@link net.liukrast.multipart.level.MultipartScanner} does with partial structures of this block,
+     * like the ones left behind by a crash or by another mod editing the world.
+     * @return the repair action (default {@link RepairAction#REMOVE}).
+     * */
+    default RepairAction getRepairAction() {
+        return RepairAction.REMOVE;
+    }
+
+    /**
+     * Whether {@link #canSurvive} should cache the state of placed structures.
+     * When enabled, checking a placed structure tells if all of its parts are still in place,
+     * only reading again the parts which changed since the last check.
+     * The answer is the same as without the cache, and placement checks are not affected.
+     * @return whether to cache survival checks (default false).
+     * */
+    default boolean cacheSurvival() {
+        return false;
     }
 
     /**
@@ -166,13 +506,38 @@ public interface IMultipartBlock {
      * @param state the block state
      * */
     default void destroy(@NotNull LevelAccessor level, @NotNull BlockPos pos, @NotNull BlockState state) {
-        var direction = getDirection(state);
-        var statePos = getPositions().get(state.getValue(getPartsProperty()));
-        var origin = getOrigin(pos, statePos, direction);
-        for (BlockPos temp : getPositions()) {
-            var pos1 = getRelative(origin, temp, direction);
-            if(!level.getBlockState(pos1).is(state.getBlock())) continue;
-            level.destroyBlock(pos1, false);
+        long start = MultipartMetrics.begin(level, this);
+        int parts = -1;
+        try {
+            var direction = getDirection(state);
+            var geometry = getGeometry();
+            var registry = level instanceof Level level1 ? MultipartRegistry.get(level1) : null;
+            // The broken part was replaced before this call, which already untracked its structure
+            var removed = registry == null ? null : registry.takeRemoved(pos.asLong());
+            long origin;
+            if(removed != null && removed.block() == this && removed.direction() == direction) origin = removed.origin();
+            else {
+                int part = getPartIndex(level, pos, state);
+                if(part == -1) return;
+                origin = geometry.origin(pos.asLong(), direction, part);
+            }
+            if(registry != null) {
+                if(useRegistry()) registry.untrack(origin);
+                if(cacheSurvival()) registry.getSurvivalCache().forget(origin);
+            }
+            if(getUpdateMode() == UpdateMode.BATCHED) {
+                parts = MultipartUpdates.destroy(this, level, pos, origin, direction, state);
+                return;
+            }
+            parts = 0;
+            var cursor = new BlockPos.MutableBlockPos();
+            for (int i = 0; i < geometry.size(); i++) {
+                if(!level.getBlockState(cursor.set(geometry.relative(origin, direction, i))).is(state.getBlock())) continue;
+                level.destroyBlock(cursor.immutable(), false);
+                parts++;
+            }
+        } finally {
+            MultipartMetrics.broken(level, this, start, parts);
         }
     }
 
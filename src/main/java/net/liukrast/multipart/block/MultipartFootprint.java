@@ -0,0 +1,134 @@
+package net.liukrast.multipart.block;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelReader;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Bulk footprint queries for multipart placement and survival.
+ * <p>Instead of going through {@link LevelReader#getBlockState(BlockPos)} for every part,
+ * parts are read in groups sharing the same few sections, each section is looked up once per group and states are read straight from its palette.
+ * Sections containing only air are skipped.
+ * Queries keep no state between calls, so they can run on world generation threads.</p>
+ * */
+public final class MultipartFootprint {
+    private static final byte UNRESOLVED = 0, SECTION = 1, NO_CHUNK = 2, OUTSIDE = 3;
+
+    private MultipartFootprint() {}
+
+    /**
+     * Finds the parts of a footprint which are occupied by a block that can't be replaced.
+     * Parts outside the build height are never blocked, like {@link net.minecraft.world.level.block.Blocks#VOID_AIR}.
+     * @param block the multipart block
+     * @param level the level
+     * @param origin the packed origin of the multipart
+     * @param direction the direction of the multipart
+     * @param stopAtFirst whether to stop at the first blocked part found, when only the result matters
+     * @return the indices of the blocked parts, empty if the multipart fits
+     * */
+    public static BitSet blocked(IMultipartBlock block, LevelReader level, long origin, Direction direction, boolean stopAtFirst) {
+        return scan(block, level, origin, direction, stopAtFirst, (part, state) -> !state.canBeReplaced());
+    }
+
+    /**
+     * Finds the parts of a placed structure which are no longer in place.
+     * @param block the multipart block
+     * @param level the level
+     * @param origin the packed origin of the structure
+     * @param direction the direction of the structure
+     * @param type the block every part should be
+     * @param stopAtFirst whether to stop at the first missing part found, when only the result matters
+     * @return the indices of the missing parts, empty if the structure is complete
+     * */
+    public static BitSet missing(IMultipartBlock block, LevelReader level, long origin, Direction direction, Block type, boolean stopAtFirst) {
+        return scan(block, level, origin, direction, stopAtFirst, (part, state) -> !isPart(block, state, part, direction, type));
+    }
+
+    /**
+     * @param block the multipart block
+     * @param state the state found at the position of a part
+     * @param part the index of the part
+     * @param direction the direction of the structure
+     * @param type the block every part should be
+     * @return whether the state is this part of the structure
+     * */
+    public static boolean isPart(IMultipartBlock block, BlockState state, int part, Direction direction, Block type) {
+        return state.is(type) && state.getValue(block.getPartsProperty()) == block.getPartValue(part) && block.getDirection(state) == direction;
+    }
+
+    /*
+     * Parts are read bucket by bucket (see MultipartGeometry.Buckets). A bucket spans at most 2 sections per axis,
+     * so the sections it touches are resolved once each, into a slot picked from the carry of each axis.
+     * */
+    private static BitSet scan(IMultipartBlock block, LevelReader level, long origin, Direction direction, boolean stopAtFirst, PartTest test) {
+        var geometry = block.getGeometry();
+        var offsets = geometry.offsets(direction);
+        var buckets = geometry.buckets(direction);
+        var found = new BitSet();
+        var chunks = new Long2ObjectOpenHashMap<ChunkAccess>();
+        var cursor = new BlockPos.MutableBlockPos();
+        var status = level instanceof Level ? ChunkStatus.FULL : ChunkStatus.EMPTY;
+        var sections = new LevelChunkSection[8];
+        var kinds = new byte[8];
+        int originX = BlockPos.getX(origin), originY = BlockPos.getY(origin), originZ = BlockPos.getZ(origin);
+        int localX = originX & 15, localY = originY & 15, localZ = originZ & 15;
+        for(int b = 0; b < buckets.count(); b++) {
+            Arrays.fill(kinds, UNRESOLVED);
+            for(int k = buckets.starts()[b]; k < buckets.starts()[b + 1]; k++) {
+                int i = buckets.parts()[k];
+                int dx = offsets[i * 3], dy = offsets[i * 3 + 1], dz = offsets[i * 3 + 2];
+                int x = originX + dx, y = originY + dy, z = originZ + dz;
+                int slot = (localX + (dx & 15)) >> 4 | ((localY + (dy & 15)) >> 4) << 1 | ((localZ + (dz & 15)) >> 4) << 2;
+                if(kinds[slot] == UNRESOLVED) resolve(level, chunks, status, x, y, z, sections, kinds, slot);
+                var state = switch(kinds[slot]) {
+                    case NO_CHUNK -> level.getBlockState(cursor.set(x, y, z));
+                    case OUTSIDE -> Blocks.VOID_AIR.defaultBlockState();
+                    default -> sections[slot].hasOnlyAir() ? Blocks.AIR.defaultBlockState() : sections[slot].getBlockState(x & 15, y & 15, z & 15);
+                };
+                if(!test.test(i, state)) continue;
+                found.set(i);
+                if(stopAtFirst) return found;
+            }
+        }
+        return found;
+    }
+
+    private static void resolve(LevelReader level, Long2ObjectOpenHashMap<ChunkAccess> chunks, ChunkStatus status, int x, int y, int z, LevelChunkSection[] sections, byte[] kinds, int slot) {
+        int chunkX = SectionPos.blockToSectionCoord(x), chunkZ = SectionPos.blockToSectionCoord(z);
+        long chunkKey = ChunkPos.asLong(chunkX, chunkZ);
+        var chunk = chunks.get(chunkKey);
+        if(chunk == null && !chunks.containsKey(chunkKey)) {
+            chunk = level.getChunk(chunkX, chunkZ, status, false);
+            chunks.put(chunkKey, chunk);
+        }
+        if(chunk == null) {
+            kinds[slot] = NO_CHUNK;
+            return;
+        }
+        int sectionIndex = chunk.getSectionIndex(y);
+        if(sectionIndex < 0 || sectionIndex >= chunk.getSectionsCount()) {
+            kinds[slot] = OUTSIDE;
+            return;
+        }
+        kinds[slot] = SECTION;
+        sections[slot] = chunk.getSection(sectionIndex);
+    }
+
+    @FunctionalInterface
+    private interface PartTest {
+        boolean test(int part, BlockState state);
+    }
+}
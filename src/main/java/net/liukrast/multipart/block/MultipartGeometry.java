@@ -0,0 +1,516 @@
+package net.liukrast.multipart.block;
+
+import com.google.common.collect.MapMaker;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.block.Mirror;
+import net.minecraft.world.level.block.Rotation;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Immutable list of the relative part positions of a multipart.
+ * <p>Alongside the relative positions, the world offset from the origin to every part is precomputed for each direction,
+ * so positions can be resolved with a single addition per axis and without allocating any {@link BlockPos}.
+ * Parts are also grouped by the chunk sections they can fall into, so footprint queries resolve each section once.</p>
+ * <p>The part remapping of each symmetry of the structure is computed the first time it is needed, see {@link #remap}.</p>
+ * Instances are created by {@link IMultipartBlock#createBlockStateDefinition$multipart} and can be obtained with {@link IMultipartBlock#getGeometry()}
+ * */
+public final class MultipartGeometry extends AbstractList<BlockPos> implements RandomAccess {
+    /*
+     * A direction basis is stored as {forward, up, side}, each one as x, y, z steps.
+     * A relative position (x, y, z) is moved by -z towards forward, y towards up and x towards side.
+     * Bases are resolved once for all six directions, so orienting a part never chains relative() calls.
+     * */
+    private static final int[][] BASIS = new int[6][];
+    /*
+     * A local symmetry is a signed permutation of the axes, indexed as permutation * 8 + signs.
+     * Relative axis a of the result takes axis PERMUTATIONS[permutation][a], negated if bit a of signs is set.
+     * */
+    private static final int[][] PERMUTATIONS = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+    private static final int SYMMETRIES = PERMUTATIONS.length * 8;
+    private static final int[] NO_MATCH = new int[0];
+    private static final Map<IMultipartBlock, Cached> CACHE = new MapMaker().weakKeys().makeMap();
+
+    static {
+        for(Direction direction : Direction.Plane.HORIZONTAL) {
+            basis(direction, Direction.UP, direction.getCounterClockWise());
+        }
+        // Vertical directions tilt a NORTH facing structure forwards (DOWN) or backwards (UP) around its side axis
+        basis(Direction.DOWN, Direction.NORTH, Direction.WEST);
+        basis(Direction.UP, Direction.SOUTH, Direction.WEST);
+    }
+
+    private final int[] local;
+    private final int[][] offsets = new int[6][];
+    private final int[][] bounds = new int[6][];
+    private final Buckets[] buckets = new Buckets[6];
+    private final Long2IntOpenHashMap indices;
+    private final int[] nearest;
+    private final AtomicReferenceArray<int[]> symmetries = new AtomicReferenceArray<>(SYMMETRIES);
+    private final int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+    private final int[] max = {Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+
+    private MultipartGeometry(int[] local) {
+        this.local = local;
+        this.indices = new Long2IntOpenHashMap(local.length / 3);
+        indices.defaultReturnValue(-1);
+        for(int i = 0; i < local.length; i += 3) {
+            indices.put(BlockPos.asLong(local[i], local[i + 1], local[i + 2]), i / 3);
+        }
+        for(int i = 0; i < 6; i++) {
+            if(BASIS[i] == null) continue;
+            offsets[i] = transform(local, BASIS[i]);
+            bounds[i] = bounds(offsets[i]);
+            buckets[i] = Buckets.of(offsets[i]);
+        }
+        for(int i = 0; i < local.length; i++) {
+            min[i % 3] = Math.min(min[i % 3], local[i]);
+            max[i % 3] = Math.max(max[i % 3], local[i]);
+        }
+        this.nearest = nearest(local);
+    }
+
+    /*
+     * Every part but the first, sorted by their distance to the first one, parts at the same distance staying in index order.
+     * */
+    private static int[] nearest(int[] local) {
+        int size = local.length / 3;
+        if(size < 2) return new int[0];
+        int[] parts = new int[size - 1];
+        long[] distances = new long[size];
+        for(int i = 1; i < size; i++) {
+            parts[i - 1] = i;
+            long dx = local[i * 3] - local[0], dy = local[i * 3 + 1] - local[1], dz = local[i * 3 + 2] - local[2];
+            distances[i] = dx * dx + dy * dy + dz * dz;
+        }
+        IntArrays.mergeSort(parts, (a, b) -> Long.compare(distances[a], distances[b]));
+        return parts;
+    }
+
+    /*
+     * Maps each part to the part at its position once the symmetry is applied and the structure is moved back onto its bounds,
+     * or returns NO_MATCH if the transformed structure does not match the original one.
+     * */
+    private int[] remapTable(int symmetry) {
+        int[] permutation = PERMUTATIONS[symmetry >> 3];
+        int[] sign = new int[3];
+        int[] shift = new int[3];
+        for(int a = 0; a < 3; a++) {
+            int b = permutation[a];
+            sign[a] = (symmetry >> a & 1) == 0 ? 1 : -1;
+            shift[a] = min[a] - (sign[a] == 1 ? min[b] : -max[b]);
+        }
+        int[] table = new int[local.length / 3];
+        for(int i = 0, j = 0; j < local.length; i++, j += 3) {
+            int part = indices.get(BlockPos.asLong(
+                    sign[0] * local[j + permutation[0]] + shift[0],
+                    sign[1] * local[j + permutation[1]] + shift[1],
+                    sign[2] * local[j + permutation[2]] + shift[2]));
+            if(part == -1) return NO_MATCH;
+            table[i] = part;
+        }
+        return table;
+    }
+
+    /*
+     * Finds the local symmetry turning a structure facing a direction into the same structure facing another direction,
+     * after its world positions have been mirrored, then rotated.
+     * */
+    private static int symmetryOf(Direction from, Direction to, Rotation rotation, Mirror mirror) {
+        var source = basis(from);
+        var target = basis(to);
+        int[] permutation = new int[3];
+        int signs = 0;
+        for(int axis = 0; axis < 3; axis++) {
+            // Relative axes x, y and z move towards side, up and backwards
+            int column = axis == 0 ? 6 : axis == 1 ? 3 : 0;
+            int scale = axis == 2 ? -1 : 1;
+            int x = scale * source[column], y = scale * source[column + 1], z = scale * source[column + 2];
+            if(mirror == Mirror.FRONT_BACK) x = -x;
+            else if(mirror == Mirror.LEFT_RIGHT) z = -z;
+            int rx = switch(rotation) {
+                case NONE -> x;
+                case CLOCKWISE_90 -> -z;
+                case CLOCKWISE_180 -> -x;
+                case COUNTERCLOCKWISE_90 -> z;
+            };
+            int rz = switch(rotation) {
+                case NONE -> z;
+                case CLOCKWISE_90 -> x;
+                case CLOCKWISE_180 -> -z;
+                case COUNTERCLOCKWISE_90 -> -x;
+            };
+            int[] moved = {
+                    rx * target[6] + y * target[7] + rz * target[8],
+                    rx * target[3] + y * target[4] + rz * target[5],
+                    -(rx * target[0] + y * target[1] + rz * target[2])
+            };
+            for(int a = 0; a < 3; a++) {
+                if(moved[a] == 0) continue;
+                permutation[a] = axis;
+                if(moved[a] < 0) signs |= 1 << a;
+            }
+        }
+        for(int i = 0; i < PERMUTATIONS.length; i++) {
+            if(Arrays.equals(PERMUTATIONS[i], permutation)) return i * 8 + signs;
+        }
+        throw new IllegalStateException("Unable to transform a multipart from " + from + " to " + to);
+    }
+
+    /**
+     * Creates the geometry of a list of relative positions.
+     * @param positions the relative positions of each part
+     * @return the geometry, or the list itself if it already is a geometry
+     * */
+    public static MultipartGeometry of(List<BlockPos> positions) {
+        if(positions instanceof MultipartGeometry geometry) return geometry;
+        int[] local = new int[positions.size() * 3];
+        for(int i = 0; i < positions.size(); i++) {
+            var pos = positions.get(i);
+            local[i * 3] = pos.getX();
+            local[i * 3 + 1] = pos.getY();
+            local[i * 3 + 2] = pos.getZ();
+        }
+        return new MultipartGeometry(local);
+    }
+
+    /**
+     * Gives the geometry of the positions of a multipart, built once for each block.
+     * The cached geometry is kept as long as the block returns the same positions.
+     * @param block the multipart block
+     * @return the geometry of {@link IMultipartBlock#getPositions()}
+     * */
+    static MultipartGeometry of(IMultipartBlock block) {
+        var positions = block.getPositions();
+        if(positions instanceof MultipartGeometry geometry) return geometry;
+        var cached = CACHE.get(block);
+        if(cached != null && (cached.positions() == positions || cached.positions().equals(positions))) return cached.geometry();
+        var geometry = of(positions);
+        CACHE.put(block, new Cached(positions, geometry));
+        return geometry;
+    }
+
+    /**
+     * Creates a geometry from relative coordinates, stored as x, y, z triplets.
+     * The array is not copied.
+     * @param local the relative coordinates
+     * @return the geometry
+     * */
+    static MultipartGeometry ofLocal(int[] local) {
+        return new MultipartGeometry(local);
+    }
+
+    private static int[] bounds(int[] offsets) {
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for(int i = 0; i < offsets.length; i++) {
+            bounds[i % 3] = Math.min(bounds[i % 3], offsets[i]);
+            bounds[i % 3 + 3] = Math.max(bounds[i % 3 + 3], offsets[i]);
+        }
+        return bounds;
+    }
+
+    private static int[] transform(int[] local, int[] basis) {
+        int[] out = new int[local.length];
+        for(int i = 0; i < local.length; i += 3) {
+            int x = local[i], y = local[i + 1], z = local[i + 2];
+            out[i] = -z * basis[0] + y * basis[3] + x * basis[6];
+            out[i + 1] = -z * basis[1] + y * basis[4] + x * basis[7];
+            out[i + 2] = -z * basis[2] + y * basis[5] + x * basis[8];
+        }
+        return out;
+    }
+
+    private static void basis(Direction forward, Direction up, Direction side) {
+        BASIS[forward.get3DDataValue()] = new int[] {
+                forward.getStepX(), forward.getStepY(), forward.getStepZ(),
+                up.getStepX(), up.getStepY(), up.getStepZ(),
+                side.getStepX(), side.getStepY(), side.getStepZ()
+        };
+    }
+
+    /*
+     * Also used by MultipartShapes to orient part shapes the same way as part positions.
+     * */
+    static int[] basis(Direction direction) {
+        var basis = BASIS[direction.get3DDataValue()];
+        if(basis == null) throw new IllegalStateException("Unable to orient a multipart towards " + direction);
+        return basis;
+    }
+
+    /*
+     * Also used by MultipartFootprint, the table must not be modified.
+     * */
+    int[] offsets(Direction direction) {
+        var table = offsets[direction.get3DDataValue()];
+        if(table == null) throw new IllegalStateException("Unable to orient a multipart towards " + direction);
+        return table;
+    }
+
+    /*
+     * Used by MultipartFootprint to read parts section by section.
+     * */
+    Buckets buckets(Direction direction) {
+        var table = buckets[direction.get3DDataValue()];
+        if(table == null) throw new IllegalStateException("Unable to orient a multipart towards " + direction);
+        return table;
+    }
+
+    /**
+     * Moves a position by a relative part position, oriented towards a direction.
+     * Used for relative positions which are not part of a geometry.
+     * @param pos the starting position
+     * @param local the relative position
+     * @param direction the direction
+     * @param inverse whether to move backwards, from a part to its origin
+     * @return the moved position
+     * */
+    public static BlockPos transform(BlockPos pos, BlockPos local, Direction direction, boolean inverse) {
+        var basis = basis(direction);
+        int x = local.getX(), y = local.getY(), z = local.getZ();
+        int sign = inverse ? -1 : 1;
+        return pos.offset(
+                sign * (-z * basis[0] + y * basis[3] + x * basis[6]),
+                sign * (-z * basis[1] + y * basis[4] + x * basis[7]),
+                sign * (-z * basis[2] + y * basis[5] + x * basis[8])
+        );
+    }
+
+    /**
+     * Finds which part a block becomes when the whole structure is mirrored, then rotated, like structure templates do.
+     * The structure may change direction as well, and is matched again against its own geometry:
+     * this only succeeds if the transformed structure has the same shape, in the new direction.
+     * Lookups use a table per symmetry, computed the first time the symmetry is used.
+     * @param part the part index
+     * @param from the direction of the structure before the transform
+     * @param to the direction of the structure after the transform
+     * @param rotation the rotation applied to world positions
+     * @param mirror the mirror applied to world positions, before the rotation
+     * @return the new part index, or {@code -1} if the transformed structure can't be represented in the new direction
+     * */
+    public int remap(int part, Direction from, Direction to, Rotation rotation, Mirror mirror) {
+        int symmetry = symmetryOf(from, to, rotation, mirror);
+        var table = symmetries.get(symmetry);
+        if(table == null) {
+            table = remapTable(symmetry);
+            symmetries.compareAndSet(symmetry, null, table);
+        }
+        return table == NO_MATCH ? -1 : table[part];
+    }
+
+    /**
+     * Orders the parts by their distance to the controller, the first part.
+     * Used to try the controllers a part could belong to, closest first.
+     * @param rank the rank, from {@code 0} to {@code size() - 2}
+     * @return the part with this rank, never the controller
+     * */
+    public int byDistance(int rank) {
+        return nearest[rank];
+    }
+
+    @Override
+    public BlockPos get(int index) {
+        return new BlockPos(local[index * 3], local[index * 3 + 1], local[index * 3 + 2]);
+    }
+
+    @Override
+    public int size() {
+        return local.length / 3;
+    }
+
+    /**
+     * @param direction the direction
+     * @param part the part index
+     * @return the X offset from the origin to the part
+     * */
+    public int offsetX(Direction direction, int part) {
+        return offsets(direction)[part * 3];
+    }
+
+    /**
+     * @param direction the direction
+     * @param part the part index
+     * @return the Y offset from the origin to the part
+     * */
+    public int offsetY(Direction direction, int part) {
+        return offsets(direction)[part * 3 + 1];
+    }
+
+    /**
+     * @param direction the direction
+     * @param part the part index
+     * @return the Z offset from the origin to the part
+     * */
+    public int offsetZ(Direction direction, int part) {
+        return offsets(direction)[part * 3 + 2];
+    }
+
+    /**
+     * Resolves the world position of a part.
+     * @param out the mutable position to write into
+     * @param origin the origin of the multipart
+     * @param direction the direction of the multipart
+     * @param part the part index
+     * @return {@code out}, for chaining
+     * */
+    public BlockPos.MutableBlockPos relative(@NotNull BlockPos.MutableBlockPos out, BlockPos origin, Direction direction, int part) {
+        var table = offsets(direction);
+        int i = part * 3;
+        return out.set(origin.getX() + table[i], origin.getY() + table[i + 1], origin.getZ() + table[i + 2]);
+    }
+
+    /**
+     * Resolves the origin of a multipart from one of its parts.
+     * @param out the mutable position to write into
+     * @param pos the position of the part
+     * @param direction the direction of the multipart
+     * @param part the part index
+     * @return {@code out}, for chaining
+     * */
+    public BlockPos.MutableBlockPos origin(@NotNull BlockPos.MutableBlockPos out, BlockPos pos, Direction direction, int part) {
+        var table = offsets(direction);
+        int i = part * 3;
+        return out.set(pos.getX() - table[i], pos.getY() - table[i + 1], pos.getZ() - table[i + 2]);
+    }
+
+    /**
+     * Gives the box containing every part, computed once per direction when the geometry is created.
+     * @param origin the packed origin of the multipart
+     * @param direction the direction of the multipart
+     * @return the bounding box of the structure, corners included
+     * */
+    public BoundingBox bounds(long origin, Direction direction) {
+        var table = bounds[direction.get3DDataValue()];
+        int x = BlockPos.getX(origin), y = BlockPos.getY(origin), z = BlockPos.getZ(origin);
+        return new BoundingBox(x + table[0], y + table[1], z + table[2], x + table[3], y + table[4], z + table[5]);
+    }
+
+    /**
+     * Finds which part is at a world offset from the origin.
+     * @param direction the direction of the multipart
+     * @param dx the X offset from the origin
+     * @param dy the Y offset from the origin
+     * @param dz the Z offset from the origin
+     * @return the part index, or {@code -1} if no part is there
+     * */
+    public int indexOf(Direction direction, int dx, int dy, int dz) {
+        var basis = basis(direction);
+        int x = dx * basis[6] + dy * basis[7] + dz * basis[8];
+        int y = dx * basis[3] + dy * basis[4] + dz * basis[5];
+        int z = -(dx * basis[0] + dy * basis[1] + dz * basis[2]);
+        return indices.get(BlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Finds which part is at a world position.
+     * @param origin the packed origin of the multipart
+     * @param direction the direction of the multipart
+     * @param pos the packed world position
+     * @return the part index, or {@code -1} if no part is there
+     * */
+    public int indexOf(long origin, Direction direction, long pos) {
+        return indexOf(direction,
+                BlockPos.getX(pos) - BlockPos.getX(origin),
+                BlockPos.getY(pos) - BlockPos.getY(origin),
+                BlockPos.getZ(pos) - BlockPos.getZ(origin));
+    }
+
+    /**
+     * Packed version of {@link #relative(BlockPos.MutableBlockPos, BlockPos, Direction, int)}
+     * @param origin the packed origin of the multipart
+     * @param direction the direction of the multipart
+     * @param part the part index
+     * @return the packed position of the part
+     * */
+    public long relative(long origin, Direction direction, int part) {
+        var table = offsets(direction);
+        int i = part * 3;
+        return BlockPos.offset(origin, table[i], table[i + 1], table[i + 2]);
+    }
+
+    /**
+     * Packed version of {@link #origin(BlockPos.MutableBlockPos, BlockPos, Direction, int)}
+     * @param pos the packed position of the part
+     * @param direction the direction of the multipart
+     * @param part the part index
+     * @return the packed origin of the multipart
+     * */
+    public long origin(long pos, Direction direction, int part) {
+        var table = offsets(direction);
+        int i = part * 3;
+        return BlockPos.offset(pos, -table[i], -table[i + 1], -table[i + 2]);
+    }
+
+    /**
+     * Visits every part in index order, until the visitor asks to stop.
+     * @param origin the origin of the multipart
+     * @param direction the direction of the multipart
+     * @param visitor the visitor
+     * @return the index of the part where the visitor stopped, or {@code -1} if every part has been visited
+     * */
+    public int find(BlockPos origin, Direction direction, PartVisitor visitor) {
+        var table = offsets(direction);
+        var cursor = new BlockPos.MutableBlockPos();
+        int x = origin.getX(), y = origin.getY(), z = origin.getZ();
+        for(int i = 0, j = 0; j < table.length; i++, j += 3) {
+            if(visitor.visit(i, cursor.set(x + table[j], y + table[j + 1], z + table[j + 2]))) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Gives the packed position of every part, in index order.
+     * @param origin the packed origin of the multipart
+     * @param direction the direction of the multipart
+     * @param consumer the consumer of packed positions
+     * */
+    public void forEach(long origin, Direction direction, LongConsumer consumer) {
+        var table = offsets(direction);
+        for(int j = 0; j < table.length; j += 3) {
+            consumer.accept(BlockPos.offset(origin, table[j], table[j + 1], table[j + 2]));
+        }
+    }
+
+    /*
+     * The parts of one direction grouped by their offset divided by 16 on each axis, so a group spans at most 2 sections per axis,
+     * whatever the origin. The parts of group b are parts[starts[b]] to parts[starts[b + 1] - 1], in index order,
+     * and ranks[part] is where a part is read, so ranks[part] + 1 parts have been read when a query stops at it.
+     * */
+    record Buckets(int[] starts, int[] parts, int[] ranks) {
+        private static Buckets of(int[] offsets) {
+            int size = offsets.length / 3;
+            int[] parts = new int[size];
+            long[] keys = new long[size];
+            for(int i = 0; i < size; i++) {
+                parts[i] = i;
+                keys[i] = BlockPos.asLong(offsets[i * 3] >> 4, offsets[i * 3 + 1] >> 4, offsets[i * 3 + 2] >> 4);
+            }
+            IntArrays.mergeSort(parts, (a, b) -> Long.compare(keys[a], keys[b]));
+            var starts = new IntArrayList();
+            for(int i = 0; i < size; i++) {
+                if(i == 0 || keys[parts[i]] != keys[parts[i - 1]]) starts.add(i);
+            }
+            starts.add(size);
+            int[] ranks = new int[size];
+            for(int i = 0; i < size; i++) ranks[parts[i]] = i;
+            return new Buckets(starts.toIntArray(), parts, ranks);
+        }
+
+        int count() {
+            return starts.length - 1;
+        }
+    }
+
+    private record Cached(List<BlockPos> positions, MultipartGeometry geometry) {}
+}
@@ -0,0 +1,75 @@
+package net.liukrast.multipart.block;
+
+import net.liukrast.multipart.level.MultipartRegistry;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.WorldGenLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Places whole multipart structures without going through a player placement.
+ * <p>Meant for features and structures: it works on any {@link LevelAccessor}, including the {@link WorldGenLevel} given to features,
+ * and it can be called from world generation threads. Every part is validated before anything is written,
+ * and no shared state is touched: no highlight, no particle, no sound and no sync packet.</p>
+ * <p>Structures placed in a world generation region are not tracked by the {@link MultipartRegistry} right away.
+ * Blocks needing it find them again the first time one of their parts is resolved.</p>
+ * */
+public final class MultipartPlacement {
+    private MultipartPlacement() {}
+
+    /**
+     * Places a multipart structure, with {@link Block#UPDATE_CLIENTS} and no neighbor updates.
+     * See {@link #place(LevelAccessor, BlockPos, BlockState, int)}
+     * @param level the level
+     * @param origin the origin of the multipart
+     * @param state any state of the multipart, giving its direction and properties
+     * @return whether the structure has been placed
+     * */
+    public static boolean place(LevelAccessor level, BlockPos origin, BlockState state) {
+        return place(level, origin, state, Block.UPDATE_CLIENTS);
+    }
+
+    /**
+     * Places a multipart structure, if every part fits.
+     * A part fits if it is inside the build height, writable by the level and replaceable.
+     * @param level the level
+     * @param origin the origin of the multipart
+     * @param state any state of the multipart, giving its direction and properties. The part value is replaced for each part
+     * @param flags the flags given to {@link LevelAccessor#setBlock(BlockPos, BlockState, int)} for each part
+     * @return whether the structure has been placed
+     * @throws IllegalArgumentException if the state is not a multipart
+     * */
+    public static boolean place(LevelAccessor level, BlockPos origin, BlockState state, int flags) {
+        if(!(state.getBlock() instanceof IMultipartBlock block)) throw new IllegalArgumentException(state + " is not a multipart");
+        var direction = block.getDirection(state);
+        if(!canPlace(block, level, origin, state)) return false;
+        var geometry = block.getGeometry();
+        for(int i = 0; i < geometry.size(); i++) {
+            level.setBlock(BlockPos.of(geometry.relative(origin.asLong(), direction, i)), block.getStateForPart(state, i), flags);
+        }
+        if(level instanceof Level level1 && block.useRegistry()) MultipartRegistry.get(level1).track(block, origin.asLong(), direction);
+        return true;
+    }
+
+    /**
+     * Checks whether a multipart structure fits, without writing anything.
+     * @param block the multipart block
+     * @param level the level
+     * @param origin the origin of the multipart
+     * @param state any state of the multipart, giving its direction
+     * @return whether every part fits
+     * */
+    public static boolean canPlace(IMultipartBlock block, LevelAccessor level, BlockPos origin, BlockState state) {
+        var direction = block.getDirection(state);
+        var geometry = block.getGeometry();
+        var cursor = new BlockPos.MutableBlockPos();
+        for(int i = 0; i < geometry.size(); i++) {
+            geometry.relative(cursor, origin, direction, i);
+            if(level.isOutsideBuildHeight(cursor)) return false;
+            if(level instanceof WorldGenLevel worldGenLevel && !worldGenLevel.ensureCanWrite(cursor)) return false;
+        }
+        return MultipartFootprint.blocked(block, level, origin.asLong(), direction, true).isEmpty();
+    }
+}
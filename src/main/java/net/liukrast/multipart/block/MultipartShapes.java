@@ -0,0 +1,101 @@
+package net.liukrast.multipart.block;
+
+import net.minecraft.core.Direction;
+import net.minecraft.util.Mth;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.BooleanOp;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The shape of every part of a multipart, for every direction it can face.
+ * <p>A single shape covering the whole structure is sliced into one shape per part, then oriented for each direction,
+ * so querying the shape of a part is a single array lookup.</p>
+ * See {@link IMultipartBlock#getStructureShape()}
+ * */
+public final class MultipartShapes {
+    private final VoxelShape[][] shapes = new VoxelShape[6][];
+
+    private MultipartShapes(VoxelShape[] north) {
+        var from = MultipartGeometry.basis(Direction.NORTH);
+        for(Direction direction : Direction.values()) {
+            var to = MultipartGeometry.basis(direction);
+            var oriented = new VoxelShape[north.length];
+            for(int i = 0; i < north.length; i++) oriented[i] = orient(north[i], from, to);
+            shapes[direction.get3DDataValue()] = oriented;
+        }
+    }
+
+    /**
+     * Slices the shape of a whole structure into the shape of each part.
+     * @param geometry the geometry of the multipart
+     * @param structure the shape of the structure facing {@link Direction#NORTH}, relative to the origin.
+     *                  Any volume outside the parts is ignored.
+     * @return the shapes
+     * */
+    @SuppressWarnings("unchecked")
+    public static MultipartShapes of(MultipartGeometry geometry, VoxelShape structure) {
+        List<AABB>[] boxes = new List[geometry.size()];
+        structure.forAllBoxes((x0, y0, z0, x1, y1, z1) -> {
+            for(int x = Mth.floor(x0); x < Mth.ceil(x1); x++) {
+                for(int y = Mth.floor(y0); y < Mth.ceil(y1); y++) {
+                    for(int z = Mth.floor(z0); z < Mth.ceil(z1); z++) {
+                        int part = geometry.indexOf(Direction.NORTH, x, y, z);
+                        if(part == -1) continue;
+                        if(boxes[part] == null) boxes[part] = new ArrayList<>();
+                        boxes[part].add(new AABB(
+                                Math.max(x0, x) - x, Math.max(y0, y) - y, Math.max(z0, z) - z,
+                                Math.min(x1, x + 1) - x, Math.min(y1, y + 1) - y, Math.min(z1, z + 1) - z));
+                    }
+                }
+            }
+        });
+        var north = new VoxelShape[boxes.length];
+        for(int i = 0; i < boxes.length; i++) north[i] = union(boxes[i]);
+        return new MultipartShapes(north);
+    }
+
+    private static VoxelShape union(List<AABB> boxes) {
+        if(boxes == null) return Shapes.empty();
+        var shape = Shapes.empty();
+        for(AABB box : boxes) shape = Shapes.joinUnoptimized(shape, Shapes.create(box), BooleanOp.OR);
+        return shape.optimize();
+    }
+
+    /*
+     * Moves the boxes of a shape from one direction basis to another, around the center of the block.
+     * */
+    private static VoxelShape orient(VoxelShape shape, int[] from, int[] to) {
+        if(from == to || shape.isEmpty()) return shape;
+        List<AABB> boxes = new ArrayList<>();
+        shape.forAllBoxes((x0, y0, z0, x1, y1, z1) -> {
+            var min = orient(from, to, x0 - 0.5, y0 - 0.5, z0 - 0.5);
+            var max = orient(from, to, x1 - 0.5, y1 - 0.5, z1 - 0.5);
+            boxes.add(new AABB(min.x + 0.5, min.y + 0.5, min.z + 0.5, max.x + 0.5, max.y + 0.5, max.z + 0.5));
+        });
+        return union(boxes);
+    }
+
+    private static Vec3 orient(int[] from, int[] to, double x, double y, double z) {
+        double side = x * from[6] + y * from[7] + z * from[8];
+        double up = x * from[3] + y * from[4] + z * from[5];
+        double forward = x * from[0] + y * from[1] + z * from[2];
+        return new Vec3(
+                forward * to[0] + up * to[3] + side * to[6],
+                forward * to[1] + up * to[4] + side * to[7],
+                forward * to[2] + up * to[5] + side * to[8]);
+    }
+
+    /**
+     * @param direction the direction of the multipart
+     * @param part the part index
+     * @return the shape of the part
+     * */
+    public VoxelShape get(Direction direction, int part) {
+        return shapes[direction.get3DDataValue()][part];
+    }
+}
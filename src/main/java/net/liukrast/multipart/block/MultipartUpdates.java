@@ -0,0 +1,138 @@
+package net.liukrast.multipart.block;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.liukrast.multipart.network.MultipartSync;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.LevelEvent;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.gameevent.GameEvent;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Internal helpers for the {@link UpdateMode#BATCHED} code paths of {@link IMultipartBlock}.
+ * */
+@ApiStatus.Internal
+public final class MultipartUpdates {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final ThreadLocal<LongSet> REMOVING = ThreadLocal.withInitial(LongOpenHashSet::new);
+
+    /**
+     * Flags used to write a single part: clients are still synced, but neighbors and shapes are left untouched
+     * */
+    public static final int SILENT_FLAGS = Block.UPDATE_CLIENTS | Block.UPDATE_KNOWN_SHAPE;
+
+    private MultipartUpdates() {}
+
+    /**
+     * Writes every part of a multipart, then notifies the surrounding blocks once, see {@link #updateNeighbors}.
+     * On the server, clients receive the written parts through a single {@link MultipartSync} payload when the loader supports it.
+     * @param block the multipart block
+     * @param level the level
+     * @param origin the packed origin of the multipart
+     * @param direction the direction of the multipart
+     * @param state the state to place, the part value will be replaced for each part
+     * @param placedPart the part which is already in the level and should not be written again
+     * @return how many parts have been written
+     * */
+    public static int place(IMultipartBlock block, Level level, long origin, Direction direction, BlockState state, int placedPart) {
+        var geometry = block.getGeometry();
+        long[] parts = new long[geometry.size()];
+        boolean sync = MultipartSync.capture(level);
+        try {
+            for(int i = 0; i < parts.length; i++) {
+                parts[i] = geometry.relative(origin, direction, i);
+                if(i == placedPart) continue;
+                level.setBlock(BlockPos.of(parts[i]), block.getStateForPart(state, i), SILENT_FLAGS);
+            }
+        } finally {
+            if(sync) MultipartSync.release(block, state, origin, direction, false);
+        }
+        updateNeighbors(level, parts, state.getBlock());
+        return parts.length - 1;
+    }
+
+    /**
+     * Removes every remaining part of a multipart in a single pass.
+     * While running, the origin is marked as being removed, so any nested call for the same structure returns immediately.
+     * Once all parts are cleared, the surrounding blocks are updated once and a single particle event is sent.
+     * On the server, clients receive the removed parts through a single {@link MultipartSync} payload when the loader supports it.
+     * @param block the multipart block
+     * @param level the level
+     * @param pos the position of the part which has been broken
+     * @param origin the packed origin of the multipart
+     * @param direction the direction of the multipart
+     * @param state the state of the broken part
+     * @return how many parts have been removed, or {@code -1} if the structure is already being removed
+     * */
+    public static int destroy(IMultipartBlock block, LevelAccessor level, BlockPos pos, long origin, Direction direction, BlockState state) {
+        var removing = REMOVING.get();
+        if(!removing.add(origin)) return -1;
+        try {
+            var geometry = block.getGeometry();
+            var property = block.getPartsProperty();
+            long[] parts = new long[geometry.size()];
+            long broken = pos.asLong();
+            BlockPos effectPos = null;
+            int removed = 0;
+            boolean sync = MultipartSync.capture(level);
+            try {
+                for(int i = 0; i < parts.length; i++) {
+                    parts[i] = geometry.relative(origin, direction, i);
+                    if(parts[i] == broken) continue;
+                    var partPos = BlockPos.of(parts[i]);
+                    var partState = level.getBlockState(partPos);
+                    if(!partState.is(state.getBlock()) || partState.getValue(property) != block.getPartValue(i)) continue;
+                    level.setBlock(partPos, partState.getFluidState().createLegacyBlock(), SILENT_FLAGS);
+                    if(effectPos == null) effectPos = partPos;
+                    removed++;
+                }
+            } finally {
+                if(sync) MultipartSync.release(block, state, origin, direction, true);
+            }
+            if(effectPos == null) return 0;
+            updateNeighbors(level, parts, state.getBlock());
+            level.levelEvent(LevelEvent.PARTICLES_DESTROY_BLOCK, effectPos, Block.getId(state));
+            level.gameEvent(GameEvent.BLOCK_DESTROY, effectPos, GameEvent.Context.of(state));
+            return removed;
+        } finally {
+            removing.remove(origin);
+        }
+    }
+
+    /**
+     * Sends one shape update through each outer face of the structure, since shapes depend on the face they are updated from,
+     * and one neighbor update to each block touching the outside of the structure, however many parts it touches.
+     * Indirect neighbor shapes (like redstone wire) are updated once per part, as {@link Level#setBlock} would.
+     * Parts never notify each other.
+     * @param level the level
+     * @param parts the packed positions of all parts
+     * @param source the block that was placed or removed
+     * */
+    public static void updateNeighbors(LevelAccessor level, long[] parts, Block source) {
+        var members = new LongOpenHashSet(parts);
+        var notified = new LongOpenHashSet();
+        var server = level instanceof Level level1 && !level1.isClientSide() ? level1 : null;
+        var cursor = new BlockPos.MutableBlockPos();
+        var neighbor = new BlockPos.MutableBlockPos();
+        for(long part : parts) {
+            cursor.set(part);
+            var partState = level.getBlockState(cursor);
+            BlockPos from = null;
+            for(Direction direction : DIRECTIONS) {
+                neighbor.setWithOffset(cursor, direction);
+                if(members.contains(neighbor.asLong())) continue;
+                if(from == null) from = cursor.immutable();
+                var target = neighbor.immutable();
+                level.neighborShapeChanged(direction.getOpposite(), partState, target, from, Block.UPDATE_ALL, 512);
+                if(server != null && notified.add(target.asLong())) server.neighborChanged(target, source, from);
+            }
+            partState.updateIndirectNeighbourShapes(level, cursor, Block.UPDATE_ALL, 512);
+            if(from != null && server != null && partState.hasAnalogOutputSignal()) server.updateNeighbourForOutputSignal(from, partState.getBlock());
+        }
+    }
+}
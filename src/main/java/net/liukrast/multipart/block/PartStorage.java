@@ -0,0 +1,21 @@
+package net.liukrast.multipart.block;
+
+/**
+ * Decides where the part index of each block of a multipart is stored.
+ * See {@link IMultipartBlock#getPartStorage()}
+ * */
+public enum PartStorage {
+    /**
+     * The part index is stored in the {@code part} property, which has one value per part.
+     * Simple and stateless, but every other property is multiplied by the number of parts.
+     * */
+    PROPERTY,
+    /**
+     * The {@code part} property only has two values: {@code 0} for the controller (the first defined part) and {@code 1} for every other part.
+     * The index of the other parts is derived from their position relative to the controller,
+     * through the {@link net.liukrast.multipart.level.MultipartRegistry} of the level.
+     * <p>Meant for very large structures: the number of block states no longer grows with the number of parts.
+     * Structures are always placed from the controller, and models can't differ per part.</p>
+     * */
+    REGISTRY
+}
@@ -0,0 +1,19 @@
+package net.liukrast.multipart.block;
+
+import net.minecraft.core.BlockPos;
+
+/**
+ * Allocation-free visitor for the parts of a multipart.
+ * See {@link IMultipartBlock#findPart(BlockPos, net.minecraft.world.level.block.state.BlockState, PartVisitor)}
+ * */
+@FunctionalInterface
+public interface PartVisitor {
+    /**
+     * Visits a single part.
+     * @param part the part index
+     * @param pos the world position of the part. The same mutable instance is reused for every part,
+     *            use {@link BlockPos#immutable()} if you need to keep it
+     * @return {@code true} to stop visiting the remaining parts
+     * */
+    boolean visit(int part, BlockPos.MutableBlockPos pos);
+}
@@ -0,0 +1,21 @@
+package net.liukrast.multipart.block;
+
+/**
+ * Decides how the {@link net.liukrast.multipart.level.MultipartScanner} fixes a partial structure of a multipart block.
+ * See {@link IMultipartBlock#getRepairAction()}
+ * */
+public enum RepairAction {
+    /**
+     * The remaining parts are removed, as if the structure had been broken, without drops.
+     * */
+    REMOVE,
+    /**
+     * The missing parts are placed again, if all of their positions can be replaced.
+     * Otherwise the structure is removed.
+     * */
+    RESTORE,
+    /**
+     * Partial structures are reported, but left as they are.
+     * */
+    IGNORE
+}
@@ -0,0 +1,22 @@
+package net.liukrast.multipart.block;
+
+/**
+ * Decides how a multipart block writes and removes its parts.
+ * See {@link IMultipartBlock#getUpdateMode()}
+ * */
+public enum UpdateMode {
+    /**
+     * Every part is written first without notifying anything,
+     * then a single neighbor/shape update pass is sent to the blocks surrounding the whole structure.
+     * Clients having this library receive the whole structure in one packet, expanded locally through the geometry of the block.
+     * Otherwise client sync is left to the chunk holder, which merges all changes of a tick into one packet per chunk section.
+     * Destruction works the same way: the structure is guarded against re-entry, cleared in one pass
+     * and produces a single particle event.
+     * */
+    BATCHED,
+    /**
+     * Default behavior: every part is placed with its own {@code setBlock(pos, state, 3)} call
+     * and removed with its own {@code destroyBlock} call, causing a full round of neighbor updates for each part.
+     * */
+    PER_PART
+}
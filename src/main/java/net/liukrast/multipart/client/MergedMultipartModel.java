@@ -0,0 +1,108 @@
+package net.liukrast.multipart.client;
+
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.block.model.BakedQuad;
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.core.Direction;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.block.state.BlockState;
+import net.neoforged.neoforge.client.ChunkRenderTypeSet;
+import net.neoforged.neoforge.client.model.BakedModelWrapper;
+import net.neoforged.neoforge.client.model.data.ModelData;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Model of a whole structure of a multipart rendered with {@link IMultipartBlock#renderMerged()}, for one controller state.
+ * <p>The quads of every part model are baked once per render type into a table of quads per part and face,
+ * so a chunk rebuild only copies them. Each part state renders its own entry through {@link #part(int)}:
+ * quads are emitted from the position of the part and culled against the neighbors of that part,
+ * which also culls the faces shared by two parts, and parts which are not in the level render nothing.</p>
+ * <p><b>Internal use only.</b></p>
+ * */
+@ApiStatus.Internal
+public class MergedMultipartModel {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Object ALL_TYPES = new Object();
+    private static final int UNCULLED = DIRECTIONS.length;
+
+    private final BlockState[] states;
+    private final BakedModel[] models;
+    private final ChunkRenderTypeSet[] renderTypes;
+    private final Map<Object, List<BakedQuad>[][]> quads = new ConcurrentHashMap<>();
+
+    /**
+     * @param states the state of each part, the controller state first
+     * @param models the model of each part state, {@code null} for parts without a model
+     * */
+    public MergedMultipartModel(BlockState[] states, BakedModel[] models) {
+        this.states = states;
+        this.models = models;
+        this.renderTypes = new ChunkRenderTypeSet[models.length];
+        var random = RandomSource.create(42L);
+        for(int i = 0; i < models.length; i++) {
+            renderTypes[i] = models[i] == null ? ChunkRenderTypeSet.none() : models[i].getRenderTypes(states[i], random, ModelData.EMPTY);
+        }
+    }
+
+    /**
+     * @param part the part index
+     * @return the model of a part state, or {@code null} if the part has no model
+     * */
+    public @Nullable BakedModel part(int part) {
+        return models[part] == null ? null : new Part(models[part], part);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BakedQuad>[][] bake(@Nullable RenderType renderType) {
+        List<BakedQuad>[][] result = new List[models.length][];
+        var random = RandomSource.create();
+        for(int part = 0; part < models.length; part++) {
+            var model = models[part];
+            if(model == null) continue;
+            result[part] = new List[UNCULLED + 1];
+            if(renderType != null && !renderTypes[part].contains(renderType)) {
+                for(int face = 0; face <= UNCULLED; face++) result[part][face] = List.of();
+                continue;
+            }
+            for(int face = 0; face <= UNCULLED; face++) {
+                random.setSeed(42L);
+                result[part][face] = List.copyOf(model.getQuads(states[part], face == UNCULLED ? null : DIRECTIONS[face], random, ModelData.EMPTY, renderType));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * The model of one part state, reading its quads from the table of the structure.
+     * */
+    private final class Part extends BakedModelWrapper<BakedModel> {
+        private final int part;
+
+        private Part(BakedModel model, int part) {
+            super(model);
+            this.part = part;
+        }
+
+        @Override
+        public @NotNull List<BakedQuad> getQuads(@Nullable BlockState state, @Nullable Direction side, @NotNull RandomSource rand) {
+            return getQuads(state, side, rand, ModelData.EMPTY, null);
+        }
+
+        @Override
+        public @NotNull List<BakedQuad> getQuads(@Nullable BlockState state, @Nullable Direction side, @NotNull RandomSource rand, @NotNull ModelData extraData, @Nullable RenderType renderType) {
+            return quads.computeIfAbsent(renderType == null ? ALL_TYPES : renderType, key -> bake(renderType))[part][side == null ? UNCULLED : side.get3DDataValue()];
+        }
+
+        @Override
+        public @NotNull ChunkRenderTypeSet getRenderTypes(@NotNull BlockState state, @NotNull RandomSource rand, @NotNull ModelData data) {
+            return renderTypes[part];
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package net.liukrast.multipart.client;
+
+import net.liukrast.multipart.network.MultipartStructurePayload;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.block.Block;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Applies {@link MultipartStructurePayload}s to the client level.
+ * <p><b>Internal use only.</b></p>
+ * */
+@ApiStatus.Internal
+public final class MultipartClientSync {
+    private MultipartClientSync() {}
+
+    /**
+     * Writes the parts as server verified states, like {@code ClientboundBlockUpdatePacket} does:
+     * parts predicted by the local player only update the state restored once the prediction is acknowledged.
+     * @param payload the payload
+     * @param player the local player
+     * */
+    public static void apply(MultipartStructurePayload payload, Player player) {
+        if(!(player.level() instanceof ClientLevel level)) return;
+        payload.apply(level, (pos, state) -> level.setServerVerifiedBlockState(pos, state, Block.UPDATE_ALL | Block.UPDATE_KNOWN_SHAPE));
+    }
+}
@@ -0,0 +1,51 @@
+package net.liukrast.multipart.client;
+
+import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.block.PartStorage;
+import net.minecraft.client.renderer.block.BlockModelShaper;
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.neoforged.api.distmarker.Dist;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.client.event.ModelEvent;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Replaces the part models of multiparts using {@link IMultipartBlock#renderMerged()} with the parts of a {@link MergedMultipartModel}, one for each controller state.
+ * <p><b>Internal use only.</b></p>
+ * */
+@ApiStatus.Internal
+@EventBusSubscriber(modid = MultipartAPI.MOD_ID, bus = EventBusSubscriber.Bus.MOD, value = Dist.CLIENT)
+public final class MultipartModels {
+    private MultipartModels() {}
+
+    @SubscribeEvent
+    static void onModifyBakingResult(ModelEvent.ModifyBakingResult event) {
+        var models = event.getModels();
+        for(Block block : BuiltInRegistries.BLOCK) {
+            if(!(block instanceof IMultipartBlock multipart) || !multipart.renderMerged() || multipart.getPartStorage() != PartStorage.PROPERTY) continue;
+            var property = multipart.getPartsProperty();
+            int size = multipart.size();
+            for(BlockState state : block.getStateDefinition().getPossibleStates()) {
+                if(state.getValue(property) != 0) continue;
+                var location = BlockModelShaper.stateToModelLocation(state);
+                if(!models.containsKey(location)) continue;
+                var states = new BlockState[size];
+                var parts = new BakedModel[size];
+                for(int i = 0; i < size; i++) {
+                    states[i] = state.setValue(property, i);
+                    parts[i] = models.get(BlockModelShaper.stateToModelLocation(states[i]));
+                }
+                var merged = new MergedMultipartModel(states, parts);
+                for(int i = 0; i < size; i++) {
+                    var part = merged.part(i);
+                    if(part != null) models.put(BlockModelShaper.stateToModelLocation(states[i]), part);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package net.liukrast.multipart.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.liukrast.multipart.level.MultipartScanner;
+import net.liukrast.multipart.metrics.MultipartMetrics;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.coordinates.BlockPosArgument;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * The {@code /multipart} command, registered by the loader specific code.
+ * <ul>
+ *     <li>{@code /multipart metrics}: prints the metrics of every multipart block type</li>
+ *     <li>{@code /multipart metrics reset}: resets them</li>
+ *     <li>{@code /multipart scan <from> <to> [repair]}: looks for partial structures in the loaded chunks of a region, and optionally fixes them</li>
+ *     <li>{@code /multipart scan background <enabled>}: enables or disables background repair of every loaded chunk</li>
+ * </ul>
+ * */
+public final class MultipartCommands {
+    private MultipartCommands() {}
+
+    /**
+     * Registers the command.
+     * @param dispatcher the command dispatcher of the server
+     * */
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("multipart")
+                .requires(source -> source.hasPermission(Commands.LEVEL_GAMEMASTERS))
+                .then(metrics())
+                .then(scan()));
+    }
+
+    private static LiteralArgumentBuilder<CommandSourceStack> metrics() {
+        return Commands.literal("metrics")
+                .executes(context -> {
+                    var lines = MultipartMetrics.report();
+                    for(String line : lines) context.getSource().sendSuccess(() -> Component.literal(line), false);
+                    return lines.size() - 1;
+                })
+                .then(Commands.literal("reset").executes(context -> {
+                    MultipartMetrics.reset();
+                    context.getSource().sendSuccess(() -> Component.literal("Multipart metrics have been reset"), true);
+                    return 1;
+                }));
+    }
+
+    private static LiteralArgumentBuilder<CommandSourceStack> scan() {
+        return Commands.literal("scan")
+                .then(Commands.literal("background")
+                        .then(Commands.argument("enabled", BoolArgumentType.bool()).executes(context -> {
+                            boolean enabled = BoolArgumentType.getBool(context, "enabled");
+                            MultipartScanner.get(context.getSource().getLevel()).setBackground(enabled);
+                            context.getSource().sendSuccess(() -> Component.literal("Background multipart repair " + (enabled ? "enabled" : "disabled")), true);
+                            return 1;
+                        })))
+                .then(Commands.argument("from", BlockPosArgument.blockPos())
+                        .then(Commands.argument("to", BlockPosArgument.blockPos())
+                                .executes(context -> scan(context, false))
+                                .then(Commands.literal("repair").executes(context -> scan(context, true)))));
+    }
+
+    private static int scan(CommandContext<CommandSourceStack> context, boolean repair) throws CommandSyntaxException {
+        var source = context.getSource();
+        var from = new ChunkPos(BlockPosArgument.getBlockPos(context, "from"));
+        var to = new ChunkPos(BlockPosArgument.getBlockPos(context, "to"));
+        MultipartScanner.get(source.getLevel()).scan(from, to, repair, job -> source.sendSuccess(() -> Component.literal(
+                "Scanned " + job.getScanned() + " chunks and " + job.getChecked() + " structures: "
+                        + job.getBroken() + " partial, " + job.getRestored() + " restored, " + job.getRemoved() + " removed"
+        ), true));
+        source.sendSuccess(() -> Component.literal("Scanning multipart structures..."), false);
+        return 1;
+    }
+}
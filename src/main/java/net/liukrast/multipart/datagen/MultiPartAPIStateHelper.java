@@ -1,18 +1,31 @@
 package net.liukrast.multipart.datagen;
 
+import net.liukrast.multipart.block.AbstractDirectionalMultipartBlock;
 import net.liukrast.multipart.block.AbstractFacingMultipartBlock;
 import net.liukrast.multipart.block.AbstractMultipartBlock;
+import net.minecraft.core.Direction;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.block.state.properties.BlockStateProperties;
+import net.minecraft.world.level.block.state.properties.DirectionProperty;
 import net.neoforged.neoforge.client.model.generators.BlockStateProvider;
 import net.neoforged.neoforge.client.model.generators.ConfiguredModel;
 import net.neoforged.neoforge.client.model.generators.ModelFile;
+import net.neoforged.neoforge.common.data.ExistingFileHelper;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 /**
  * Contains useful methods for data generation
+ * <p>Blocks using {@link net.liukrast.multipart.block.IMultipartBlock#renderMerged()} are generated the same way:
+ * the model of each part state is what the merged model is built from.</p>
  * */
 @SuppressWarnings("unused")
 public class MultiPartAPIStateHelper {
@@ -22,34 +35,60 @@ public class MultiPartAPIStateHelper {
     /**
      * Generates blockstate for a facing multipart block.
      * Models will be read from {@code assets/modid/models/yourblock/...}
+     * <p>Each part model is resolved once and rotated for every facing.
+     * Variants only depend on the part and facing properties, so any other property of the block does not multiply the generated variants.</p>
      * @param blockStateProvider the block state provider of your mod
      * @param block the block
      * */
     public static void facingMultipartBlock(BlockStateProvider blockStateProvider, AbstractFacingMultipartBlock block) {
-        multiPartBlock(
-                blockStateProvider,
-                block,
-                (state, id) -> "block/" + id + "/part_" + state.getValue(block.getPartsProperty()),
-                (state, builder) -> builder.rotationY(((int)state.getValue(BlockStateProperties.HORIZONTAL_FACING).toYRot() + 180) % 360));
+        bake(block, AbstractFacingMultipartBlock.FACING, new HashMap<>(), blockStateProvider.models().existingFileHelper).register(blockStateProvider);
+    }
+
+    /**
+     * Generates blockstate for a directional multipart block.
+     * Models will be read from {@code assets/modid/models/yourblock/...}, facing {@link Direction#NORTH}.
+     * <p>Each part model is resolved once and rotated for every facing, vertical ones included.
+     * Variants only depend on the part and facing properties, so any other property of the block does not multiply the generated variants.</p>
+     * @param blockStateProvider the block state provider of your mod
+     * @param block the block
+     * */
+    public static void directionalMultipartBlock(BlockStateProvider blockStateProvider, AbstractDirectionalMultipartBlock block) {
+        bake(block, AbstractDirectionalMultipartBlock.FACING, new HashMap<>(), blockStateProvider.models().existingFileHelper).register(blockStateProvider);
     }
 
     /**
      * Generates blockstate for a multipart block.
      * Models will be read from {@code assets/modid/models/yourblock/...}
+     * <p>Each part model is resolved once.
+     * Variants only depend on the part property, so any other property of the block does not multiply the generated variants.</p>
      * @param blockStateProvider the block state provider of your mod
      * @param block the block
      * */
     public static void multiPartBlock(BlockStateProvider blockStateProvider, AbstractMultipartBlock block) {
-        multiPartBlock(
-                blockStateProvider,
-                block,
-                (state, id) -> "block/" + id + "/part_" + state.getValue(block.getPartsProperty()),
-                (state, builder) -> {}
-        );
+        bake(block, null, new HashMap<>(), blockStateProvider.models().existingFileHelper).register(blockStateProvider);
+    }
+
+    /**
+     * Generates blockstates for many multipart blocks at once.
+     * Facing and directional multipart blocks are generated like {@link #facingMultipartBlock} and {@link #directionalMultipartBlock},
+     * the others like {@link #multiPartBlock(BlockStateProvider, AbstractMultipartBlock)}.
+     * <p>Variants of all blocks are computed in parallel, then registered to the provider in the order of the collection,
+     * since the provider itself is not thread-safe.</p>
+     * @param blockStateProvider the block state provider of your mod
+     * @param blocks the blocks
+     * */
+    public static void multiPartBlocks(BlockStateProvider blockStateProvider, Collection<? extends AbstractMultipartBlock> blocks) {
+        var helper = blockStateProvider.models().existingFileHelper;
+        Map<ResourceLocation, ModelFile> files = new ConcurrentHashMap<>();
+        var baked = blocks.parallelStream()
+                .map(block -> bake(block, facingOf(block), files, helper))
+                .toList();
+        for(Baked entry : baked) entry.register(blockStateProvider);
     }
 
     /**
      * Generates blockstate for a multipart block.
+     * <p>Model files are created once for each path, and configured models are shared between states producing the same model, rotation and weight.</p>
      * @param blockStateProvider the block state provider of your mod
      * @param block the block
      * @param pathProvider Allows choosing where your models are read based on the state and id
@@ -57,14 +96,64 @@ public class MultiPartAPIStateHelper {
      * */
     public static void multiPartBlock(BlockStateProvider blockStateProvider, AbstractMultipartBlock block, PathProvider pathProvider, BiConsumer<BlockState, ConfiguredModel.Builder<?>> extraData) {
         var id = BuiltInRegistries.BLOCK.getKey(block);
+        var helper = blockStateProvider.models().existingFileHelper;
+        Map<String, ModelFile> files = new HashMap<>();
+        Map<VariantKey, ConfiguredModel[]> variants = new HashMap<>();
         blockStateProvider.getVariantBuilder(block)
                 .forAllStates(state -> {
-                    var builder = ConfiguredModel.builder().modelFile(new ModelFile.ExistingModelFile(ResourceLocation.fromNamespaceAndPath(id.getNamespace(), pathProvider.provide(state, id.getPath())), blockStateProvider.models().existingFileHelper));
+                    var file = files.computeIfAbsent(pathProvider.provide(state, id.getPath()), path -> new ModelFile.ExistingModelFile(ResourceLocation.fromNamespaceAndPath(id.getNamespace(), path), helper));
+                    var builder = ConfiguredModel.builder().modelFile(file);
                     extraData.accept(state, builder);
-                    return builder.build();
+                    var models = builder.build();
+                    return models.length == 1 ? variants.computeIfAbsent(VariantKey.of(models[0]), key -> models) : models;
                 });
     }
 
+    private static @Nullable DirectionProperty facingOf(AbstractMultipartBlock block) {
+        if(block instanceof AbstractFacingMultipartBlock) return AbstractFacingMultipartBlock.FACING;
+        if(block instanceof AbstractDirectionalMultipartBlock) return AbstractDirectionalMultipartBlock.FACING;
+        return null;
+    }
+
+    private static Baked bake(AbstractMultipartBlock block, @Nullable DirectionProperty facingProperty, Map<ResourceLocation, ModelFile> files, ExistingFileHelper helper) {
+        var id = BuiltInRegistries.BLOCK.getKey(block);
+        var parts = block.getPartsProperty().getPossibleValues();
+        List<Direction> facings = facingProperty != null ? List.copyOf(facingProperty.getPossibleValues()) : Collections.singletonList(null);
+        List<Variant> variants = new ArrayList<>(parts.size() * facings.size());
+        for(int part : parts) {
+            var location = ResourceLocation.fromNamespaceAndPath(id.getNamespace(), "block/" + id.getPath() + "/part_" + part);
+            var file = files.computeIfAbsent(location, location1 -> new ModelFile.ExistingModelFile(location1, helper));
+            for(Direction facing : facings) {
+                var builder = ConfiguredModel.builder().modelFile(file);
+                if(facing == Direction.DOWN) builder.rotationX(90);
+                else if(facing == Direction.UP) builder.rotationX(270);
+                else if(facing != null) builder.rotationY(((int) facing.toYRot() + 180) % 360);
+                variants.add(new Variant(part, facingProperty, facing, builder.buildLast()));
+            }
+        }
+        return new Baked(block, variants);
+    }
+
+    private record Variant(int part, @Nullable DirectionProperty property, @Nullable Direction facing, ConfiguredModel model) {}
+
+    private record Baked(AbstractMultipartBlock block, List<Variant> variants) {
+        void register(BlockStateProvider blockStateProvider) {
+            var builder = blockStateProvider.getVariantBuilder(block);
+            var property = block.getPartsProperty();
+            for(Variant variant : variants) {
+                var state = builder.partialState().with(property, variant.part());
+                if(variant.facing() != null) state = state.with(variant.property(), variant.facing());
+                state.setModels(variant.model());
+            }
+        }
+    }
+
+    private record VariantKey(ModelFile model, int rotationX, int rotationY, boolean uvLock, int weight) {
+        static VariantKey of(ConfiguredModel model) {
+            return new VariantKey(model.model, model.rotationX, model.rotationY, model.uvLock, model.weight);
+        }
+    }
+
     /**
      * A simple interface used to provide the path where your file is stored based on state and id
      * */
@@ -0,0 +1,23 @@
+package net.liukrast.multipart.level;
+
+import net.minecraft.nbt.ListTag;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Implemented on every {@link net.minecraft.world.level.chunk.LevelChunk} through a mixin.
+ * Holds the structures read with the chunk until it is loaded into its level,
+ * so chunks which are read but never loaded do not leave structures in the registry.
+ * */
+@ApiStatus.Internal
+public interface MultipartChunk {
+    /**
+     * @return the serialized structures waiting for the chunk to be loaded, if any
+     * */
+    @Nullable ListTag multipart$getPending();
+
+    /**
+     * @param pending the serialized structures to track once the chunk is loaded
+     * */
+    void multipart$setPending(@Nullable ListTag pending);
+}
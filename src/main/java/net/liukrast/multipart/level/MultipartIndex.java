@@ -0,0 +1,142 @@
+package net.liukrast.multipart.level;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial index over the bounding boxes of the structures tracked by a {@link MultipartRegistry}.
+ * <p>Boxes are bucketed by chunk section: each structure is stored in every section its box overlaps,
+ * so queries only look at the sections they cover and never read block states.
+ * The index is updated by {@link MultipartRegistry#track} and {@link MultipartRegistry#untrack},
+ * so it follows placement, destruction, chunk loading and unloading.</p>
+ * <p>Like the registry, the index only knows about blocks returning {@code true} from
+ * {@link net.liukrast.multipart.block.IMultipartBlock#useRegistry()}, and must only be used from the thread owning the level.</p>
+ * */
+public final class MultipartIndex {
+    private final Long2ObjectOpenHashMap<ObjectArrayList<Entry>> sections = new Long2ObjectOpenHashMap<>();
+
+    MultipartIndex() {}
+
+    private record Entry(MultipartInstance instance, BoundingBox bounds) {}
+
+    void add(MultipartInstance instance) {
+        var entry = new Entry(instance, instance.bounds());
+        forEachSection(entry.bounds(), section -> sections.computeIfAbsent(section, key -> new ObjectArrayList<>()).add(entry));
+    }
+
+    void remove(MultipartInstance instance) {
+        forEachSection(instance.bounds(), section -> {
+            var entries = sections.get(section);
+            if(entries == null) return;
+            for(int i = 0; i < entries.size(); i++) {
+                if(entries.get(i).instance() != instance) continue;
+                entries.remove(i);
+                break;
+            }
+            if(entries.isEmpty()) sections.remove(section);
+        });
+    }
+
+    private static void forEachSection(BoundingBox box, SectionVisitor visitor) {
+        for(int x = SectionPos.blockToSectionCoord(box.minX()); x <= SectionPos.blockToSectionCoord(box.maxX()); x++) {
+            for(int y = SectionPos.blockToSectionCoord(box.minY()); y <= SectionPos.blockToSectionCoord(box.maxY()); y++) {
+                for(int z = SectionPos.blockToSectionCoord(box.minZ()); z <= SectionPos.blockToSectionCoord(box.maxZ()); z++) {
+                    visitor.visit(SectionPos.asLong(x, y, z));
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SectionVisitor {
+        void visit(long section);
+    }
+
+    /**
+     * Finds every structure whose bounding box contains a position.
+     * Use {@link MultipartInstance#partAt(long)} to know which part, if any, is at the position.
+     * @param pos the position
+     * @return the structures containing the position, empty if there are none
+     * */
+    public List<MultipartInstance> getContaining(BlockPos pos) {
+        var entries = sections.get(SectionPos.asLong(pos));
+        if(entries == null) return List.of();
+        List<MultipartInstance> found = new ArrayList<>(1);
+        for(Entry entry : entries) {
+            if(entry.bounds().isInside(pos)) found.add(entry.instance());
+        }
+        return found;
+    }
+
+    /**
+     * Finds every structure whose bounding box intersects a box.
+     * Each structure is listed once, even if it spans many sections.
+     * @param box the box, corners included
+     * @return the structures intersecting the box, empty if there are none
+     * */
+    public List<MultipartInstance> getIntersecting(BoundingBox box) {
+        List<MultipartInstance> found = new ArrayList<>();
+        forEachSection(box, section -> {
+            var entries = sections.get(section);
+            if(entries == null) return;
+            for(Entry entry : entries) {
+                var bounds = entry.bounds();
+                if(!bounds.intersects(box)) continue;
+                // Only report a structure from the section holding the lowest corner of the intersection
+                int x = Math.max(bounds.minX(), box.minX()), y = Math.max(bounds.minY(), box.minY()), z = Math.max(bounds.minZ(), box.minZ());
+                if(SectionPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z)) == section) found.add(entry.instance());
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Finds the structure whose bounding box is the closest to a point.
+     * Sections are searched in growing rings around the point, stopping as soon as no closer box can be found.
+     * @param pos the point
+     * @param maxDistance the maximum distance from the point to the box
+     * @return the closest structure, or {@code null} if there is none within the distance
+     * */
+    public @Nullable MultipartInstance getNearest(Vec3 pos, double maxDistance) {
+        int sectionX = SectionPos.blockToSectionCoord(pos.x), sectionY = SectionPos.blockToSectionCoord(pos.y), sectionZ = SectionPos.blockToSectionCoord(pos.z);
+        int rings = (int) Math.ceil(maxDistance / SectionPos.SECTION_SIZE) + 1;
+        MultipartInstance nearest = null;
+        double best = maxDistance * maxDistance;
+        for(int ring = 0; ring <= rings; ring++) {
+            // Every section in this ring is at least (ring - 1) sections away from the point
+            double reach = (ring - 1) * (double) SectionPos.SECTION_SIZE;
+            if(ring > 0 && reach * reach > best) break;
+            for(int x = -ring; x <= ring; x++) {
+                for(int y = -ring; y <= ring; y++) {
+                    for(int z = -ring; z <= ring; z++) {
+                        if(Math.max(Math.abs(x), Math.max(Math.abs(y), Math.abs(z))) != ring) continue;
+                        var entries = sections.get(SectionPos.asLong(sectionX + x, sectionY + y, sectionZ + z));
+                        if(entries == null) continue;
+                        for(Entry entry : entries) {
+                            double distance = distanceSqr(entry.bounds(), pos);
+                            if(distance > best || (distance == best && nearest != null)) continue;
+                            best = distance;
+                            nearest = entry.instance();
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private static double distanceSqr(BoundingBox box, Vec3 pos) {
+        double x = Math.max(0, Math.max(box.minX() - pos.x, pos.x - (box.maxX() + 1)));
+        double y = Math.max(0, Math.max(box.minY() - pos.y, pos.y - (box.maxY() + 1)));
+        double z = Math.max(0, Math.max(box.minZ() - pos.z, pos.z - (box.maxZ() + 1)));
+        return x * x + y * y + z * z;
+    }
+}
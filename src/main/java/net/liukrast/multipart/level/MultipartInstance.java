@@ -0,0 +1,54 @@
+package net.liukrast.multipart.level;
+
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A multipart structure which is live in a level.
+ * @param block the multipart block
+ * @param origin the packed origin of the structure
+ * @param direction the direction of the structure
+ * */
+public record MultipartInstance(IMultipartBlock block, long origin, Direction direction) {
+    /**
+     * @return the origin of the structure
+     * */
+    public BlockPos originPos() {
+        return BlockPos.of(origin);
+    }
+
+    /**
+     * @param part the part index
+     * @return the packed position of the part
+     * */
+    public long partPos(int part) {
+        return block.getGeometry().relative(origin, direction, part);
+    }
+
+    /**
+     * @param pos the packed world position
+     * @return the index of the part at this position, or {@code -1} if no part of the structure is there
+     * */
+    public int partAt(long pos) {
+        return block.getGeometry().indexOf(origin, direction, pos);
+    }
+
+    /**
+     * @return the box containing every part of the structure
+     * */
+    public BoundingBox bounds() {
+        return block.getGeometry().bounds(origin, direction);
+    }
+
+    /**
+     * Gives the packed position of every part of the structure.
+     * @param consumer the consumer of packed positions
+     * */
+    public void forEachPart(LongConsumer consumer) {
+        block.getGeometry().forEach(origin, direction, consumer);
+    }
+}
@@ -0,0 +1,15 @@
+package net.liukrast.multipart.level;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Implemented on every {@link net.minecraft.world.level.Level} through a mixin.
+ * Use {@link MultipartRegistry#get(net.minecraft.world.level.Level)} instead.
+ * */
+@ApiStatus.Internal
+public interface MultipartLevel {
+    /**
+     * @return the multipart registry of this level
+     * */
+    MultipartRegistry multipart$getRegistry();
+}
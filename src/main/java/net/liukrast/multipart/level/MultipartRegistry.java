@@ -0,0 +1,348 @@
+package net.liukrast.multipart.level;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.block.PartStorage;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Per-level registry of the live multipart structures, keyed by origin and indexed by chunk.
+ * It is also where {@link PartStorage#REGISTRY} blocks resolve the index of their parts,
+ * and where bounding box queries are answered, see {@link #getIndex()}.
+ * <p>Only blocks returning {@code true} from {@link IMultipartBlock#useRegistry()} are tracked.
+ * Structures are tracked when placed, untracked as soon as any of their parts is replaced, saved with the chunk containing their origin
+ * and evicted when that chunk unloads.</p>
+ * <p>The registry is not thread-safe and must only be used from the thread owning the level.</p>
+ * */
+public final class MultipartRegistry {
+    /**
+     * The key used to store the structures in the chunk data
+     * */
+    @ApiStatus.Internal
+    public static final String TAG_KEY = "multipart_api:structures";
+
+    private final Long2ObjectOpenHashMap<MultipartInstance> byOrigin = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<MultipartInstance> byPart = new Long2ObjectOpenHashMap<>();
+    private final Long2IntOpenHashMap partIndex = new Long2IntOpenHashMap();
+    private final Long2ObjectOpenHashMap<LongSet> byChunk = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<MultipartInstance> removed = new Long2ObjectOpenHashMap<>();
+    private final SurvivalCache survivalCache = new SurvivalCache();
+    private final MultipartIndex index = new MultipartIndex();
+    @Nullable MultipartScanner scanner;
+
+    private final Level level;
+
+    /**
+     * Internal constructor, every level creates its own registry.
+     * @param level the level owning this registry
+     * */
+    @ApiStatus.Internal
+    public MultipartRegistry(Level level) {
+        this.level = level;
+        partIndex.defaultReturnValue(-1);
+    }
+
+    /**
+     * @param level the level
+     * @return the registry of the level
+     * */
+    public static MultipartRegistry get(Level level) {
+        return ((MultipartLevel) level).multipart$getRegistry();
+    }
+
+    static long chunkOf(long pos) {
+        return ChunkPos.asLong(SectionPos.blockToSectionCoord(BlockPos.getX(pos)), SectionPos.blockToSectionCoord(BlockPos.getZ(pos)));
+    }
+
+    /**
+     * Starts tracking a structure, replacing any structure with the same origin.
+     * @param block the multipart block
+     * @param origin the packed origin of the structure
+     * @param direction the direction of the structure
+     * @return the tracked instance
+     * */
+    public MultipartInstance track(IMultipartBlock block, long origin, Direction direction) {
+        untrack(origin);
+        var instance = new MultipartInstance(block, origin, direction);
+        byOrigin.put(origin, instance);
+        byChunk.computeIfAbsent(chunkOf(origin), key -> new LongOpenHashSet()).add(origin);
+        var geometry = block.getGeometry();
+        for(int i = 0; i < geometry.size(); i++) {
+            long part = geometry.relative(origin, direction, i);
+            byPart.put(part, instance);
+            partIndex.put(part, i);
+        }
+        index.add(instance);
+        return instance;
+    }
+
+    /**
+     * Stops tracking a structure.
+     * @param origin the packed origin of the structure
+     * @return the instance which was tracked, if any
+     * */
+    public @Nullable MultipartInstance untrack(long origin) {
+        var instance = byOrigin.remove(origin);
+        if(instance == null) return null;
+        long chunk = chunkOf(origin);
+        var origins = byChunk.get(chunk);
+        if(origins != null && origins.remove(origin) && origins.isEmpty()) byChunk.remove(chunk);
+        instance.forEachPart(part -> {
+            if(byPart.get(part) != instance) return;
+            byPart.remove(part);
+            partIndex.remove(part);
+        });
+        index.remove(instance);
+        return instance;
+    }
+
+    /**
+     * Reacts to a block change at any position, on both sides and whatever the flags of the change.
+     * Stops tracking the structure owning a part which has been replaced by another block,
+     * and marks the changed part dirty in the {@link SurvivalCache}, where the structure is forgotten if its controller was replaced.
+     * The structure is kept until the end of the tick, for {@link IMultipartBlock#destroy} to find it, see {@link #takeRemoved}.
+     * @param pos the packed position of the change
+     * @param previous the state before the change
+     * @param state the state after the change
+     * */
+    @ApiStatus.Internal
+    public void onBlockChanged(long pos, BlockState previous, BlockState state) {
+        if(previous.getBlock() instanceof IMultipartBlock block) {
+            boolean replaced = !state.is(previous.getBlock());
+            if(block.cacheSurvival()) invalidateSurvival(block, pos, previous, replaced);
+            if(replaced) {
+                var instance = byPart.get(pos);
+                if(instance != null && instance.block() == block) {
+                    untrack(instance.origin());
+                    removed.put(pos, instance);
+                }
+            }
+        }
+        if(state.getBlock() instanceof IMultipartBlock block && block.cacheSurvival()) invalidateSurvival(block, pos, state, false);
+    }
+
+    /*
+     * Never reads the level: tracked parts come from the registry, the others from their state.
+     * A replaced controller means the structure is gone, so it is forgotten instead of marked dirty.
+     * */
+    private void invalidateSurvival(IMultipartBlock block, long pos, BlockState state, boolean replaced) {
+        var instance = byPart.get(pos);
+        long origin;
+        int part;
+        if(instance != null && instance.block() == block) {
+            origin = instance.origin();
+            part = partIndex.get(pos);
+        } else {
+            part = block.getPartIndex(null, BlockPos.of(pos), state);
+            if(part == -1) return;
+            origin = block.getGeometry().origin(pos, block.getDirection(state), part);
+        }
+        if(replaced && part == 0) survivalCache.forget(origin);
+        else survivalCache.invalidate(origin, part);
+    }
+
+    /**
+     * Gives the structure which stopped being tracked because the block at a position was replaced during this tick.
+     * It can only be taken once.
+     * @param pos the packed position of the replaced part
+     * @return the structure owning the part before it was replaced, if tracked back then
+     * */
+    @ApiStatus.Internal
+    public @Nullable MultipartInstance takeRemoved(long pos) {
+        return removed.remove(pos);
+    }
+
+    /**
+     * @param origin the packed origin
+     * @return the structure with this origin, if tracked
+     * */
+    public @Nullable MultipartInstance getByOrigin(long origin) {
+        return byOrigin.get(origin);
+    }
+
+    /**
+     * @param pos the packed position of any part
+     * @return the structure owning this part, if tracked
+     * */
+    public @Nullable MultipartInstance getByPart(long pos) {
+        return byPart.get(pos);
+    }
+
+    /**
+     * @param pos the packed position of any part
+     * @return the index of the part at this position, or {@code -1} if not tracked
+     * */
+    public int getPartIndex(long pos) {
+        return partIndex.get(pos);
+    }
+
+    /**
+     * Looks up the structure owning a part, recomputing and tracking it from the block state when missing or stale.
+     * @param pos the position of the part
+     * @param state the block state at that position
+     * @return the structure, or {@code null} if the state is not a tracked multipart
+     * */
+    public @Nullable MultipartInstance resolve(BlockPos pos, BlockState state) {
+        if(!(state.getBlock() instanceof IMultipartBlock block) || !block.useRegistry()) return null;
+        long packed = pos.asLong();
+        var instance = byPart.get(packed);
+        var direction = block.getDirection(state);
+        if(instance != null && instance.block() == block && instance.direction() == direction) return instance;
+        int part = block.getPartIndex(level, pos, state);
+        if(part == -1) return null;
+        return track(block, block.getGeometry().origin(packed, direction, part), direction);
+    }
+
+    /**
+     * Finds the part index of a {@link PartStorage#REGISTRY} block by looking for its controller,
+     * used when the registry has no entry for it (for example on the client).
+     * Candidate controllers are tried from the closest to the farthest, see {@link net.liukrast.multipart.block.MultipartGeometry#byDistance},
+     * so a neighbouring structure is only picked if no structure closer to the part matches.
+     * A controller tracked by the registry only matches if its structure covers the part.
+     * Nothing is tracked, use {@link #resolve} for that.
+     * @param block the multipart block
+     * @param level the level
+     * @param pos the position of the part
+     * @param state the state of the part
+     * @return the part index, or {@code -1} if no controller was found
+     * */
+    @ApiStatus.Internal
+    public static int locate(IMultipartBlock block, BlockGetter level, BlockPos pos, BlockState state) {
+        var geometry = block.getGeometry();
+        var direction = block.getDirection(state);
+        var property = block.getPartsProperty();
+        var registry = level instanceof Level level1 ? get(level1) : null;
+        var cursor = new BlockPos.MutableBlockPos();
+        long packed = pos.asLong();
+        for(int rank = 0; rank < geometry.size() - 1; rank++) {
+            int i = geometry.byDistance(rank);
+            long origin = geometry.origin(packed, direction, i);
+            long controllerPos = geometry.relative(origin, direction, 0);
+            var controller = level.getBlockState(cursor.set(controllerPos));
+            if(!controller.is(state.getBlock()) || controller.getValue(property) != 0 || block.getDirection(controller) != direction) continue;
+            var tracked = registry == null ? null : registry.byPart.get(controllerPos);
+            if(tracked != null && (tracked.block() != block || tracked.origin() != origin || tracked.direction() != direction)) continue;
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the spatial index of the structures tracked in this level
+     * */
+    public MultipartIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the survival cache of this level
+     * */
+    public SurvivalCache getSurvivalCache() {
+        return survivalCache;
+    }
+
+    /**
+     * @return the repair scanner of this level, created on first use
+     * @throws IllegalStateException if this is not the registry of a server level
+     * */
+    public MultipartScanner getScanner() {
+        if(scanner == null) {
+            if(!(level instanceof ServerLevel serverLevel)) throw new IllegalStateException("Only server levels can be scanned");
+            scanner = new MultipartScanner(serverLevel);
+        }
+        return scanner;
+    }
+
+    /**
+     * Called when a chunk of this level becomes fully loaded.
+     * @param chunk the loaded chunk
+     * */
+    @ApiStatus.Internal
+    public void loadChunk(ChunkPos chunk) {
+        if(level instanceof ServerLevel) getScanner().onChunkLoaded(chunk);
+    }
+
+    /**
+     * Called at the end of every tick of this level, on both sides.
+     * */
+    @ApiStatus.Internal
+    public void tick() {
+        removed.clear();
+        if(scanner != null) scanner.tick();
+    }
+
+    /**
+     * @return the number of tracked structures
+     * */
+    public int size() {
+        return byOrigin.size();
+    }
+
+    /**
+     * Evicts every structure whose origin is in a chunk.
+     * @param chunk the chunk being unloaded
+     * */
+    @ApiStatus.Internal
+    public void unloadChunk(ChunkPos chunk) {
+        if(scanner != null) scanner.onChunkUnloaded(chunk);
+        survivalCache.unloadChunk(chunk);
+        var origins = byChunk.remove(chunk.toLong());
+        if(origins == null) return;
+        for(long origin : origins.toLongArray()) untrack(origin);
+    }
+
+    /**
+     * Serializes every structure whose origin is in a chunk.
+     * @param chunk the chunk being saved
+     * @return the serialized structures, or {@code null} if there are none
+     * */
+    @ApiStatus.Internal
+    public @Nullable ListTag save(ChunkPos chunk) {
+        var origins = byChunk.get(chunk.toLong());
+        if(origins == null || origins.isEmpty()) return null;
+        var list = new ListTag();
+        for(long origin : origins) {
+            var instance = byOrigin.get(origin);
+            var tag = new CompoundTag();
+            tag.putString("block", BuiltInRegistries.BLOCK.getKey((Block) instance.block()).toString());
+            tag.putLong("origin", origin);
+            tag.putByte("direction", (byte) instance.direction().get3DDataValue());
+            list.add(tag);
+        }
+        return list;
+    }
+
+    /**
+     * Tracks the structures saved with a chunk. Entries whose block no longer exists are dropped.
+     * @param chunk the chunk being loaded
+     * @param list the serialized structures
+     * */
+    @ApiStatus.Internal
+    public void load(ChunkPos chunk, ListTag list) {
+        for(int i = 0; i < list.size(); i++) {
+            var tag = list.getCompound(i);
+            var id = ResourceLocation.tryParse(tag.getString("block"));
+            if(id == null || !(BuiltInRegistries.BLOCK.get(id) instanceof IMultipartBlock block) || !block.useRegistry()) continue;
+            long origin = tag.getLong("origin");
+            if(chunkOf(origin) != chunk.toLong()) continue;
+            track(block, origin, Direction.from3DDataValue(tag.getByte("direction")));
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package net.liukrast.multipart.level;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.block.MultipartUpdates;
+import net.liukrast.multipart.block.PartStorage;
+import net.liukrast.multipart.block.RepairAction;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Finds partial multipart structures in the loaded chunks of a server level, and fixes them according to {@link IMultipartBlock#getRepairAction()}.
+ * <p>Work is split between threads, within a time budget on each server tick:</p>
+ * <ul>
+ *     <li>on the server thread, chunks are taken in batches and only the sections which may contain a multipart are copied;</li>
+ *     <li>on a background thread, copies are searched for multipart blocks, grouped by origin, and each structure is checked against its geometry;</li>
+ *     <li>back on the server thread, structures found broken, or reaching outside the batch, are checked again against the live level and fixed,
+ *     unless one of their slots now belongs to another structure tracked by the {@link MultipartRegistry}.</li>
+ * </ul>
+ * <p>Scans are started for a region with {@link #scan}, or repeated over every loaded chunk with {@link #setBackground(boolean)}.
+ * {@link PartStorage#REGISTRY} structures are found through their controller only.</p>
+ * */
+public final class MultipartScanner {
+    private static final int BATCH_SIZE = 16;
+    private static final long TICK_BUDGET = 2_000_000L;
+    private static final int BACKGROUND_INTERVAL = 6000;
+
+    private final ServerLevel level;
+    private final LongLinkedOpenHashSet loaded = new LongLinkedOpenHashSet();
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+    private boolean background;
+    private long nextBackgroundPass;
+
+    MultipartScanner(ServerLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * @param level the level
+     * @return the scanner of the level
+     * */
+    public static MultipartScanner get(ServerLevel level) {
+        return MultipartRegistry.get(level).getScanner();
+    }
+
+    void onChunkLoaded(ChunkPos chunk) {
+        loaded.add(chunk.toLong());
+    }
+
+    void onChunkUnloaded(ChunkPos chunk) {
+        loaded.remove(chunk.toLong());
+    }
+
+    /**
+     * Queues a scan of every loaded chunk between two chunks, corners included.
+     * @param from a corner of the region
+     * @param to the opposite corner of the region
+     * @param repair whether to fix the partial structures found, or only count them
+     * @param onDone called on the server thread once the scan is complete, may be null
+     * @return the scan
+     * */
+    public Job scan(ChunkPos from, ChunkPos to, boolean repair, @Nullable Consumer<Job> onDone) {
+        var chunks = new LongArrayFIFOQueue();
+        for(int x = Math.min(from.x, to.x); x <= Math.max(from.x, to.x); x++) {
+            for(int z = Math.min(from.z, to.z); z <= Math.max(from.z, to.z); z++) chunks.enqueue(ChunkPos.asLong(x, z));
+        }
+        var job = new Job(chunks, repair, onDone);
+        jobs.add(job);
+        return job;
+    }
+
+    /**
+     * Enables or disables background scanning: every few minutes, all loaded chunks are scanned and repaired.
+     * Disabled by default, and not saved with the level.
+     * @param background whether to scan in background
+     * */
+    public void setBackground(boolean background) {
+        this.background = background;
+        this.nextBackgroundPass = level.getGameTime();
+    }
+
+    /**
+     * @return whether background scanning is enabled
+     * */
+    public boolean isBackground() {
+        return background;
+    }
+
+    void tick() {
+        long deadline = System.nanoTime() + TICK_BUDGET;
+        if(jobs.isEmpty() && background && level.getGameTime() >= nextBackgroundPass && !loaded.isEmpty()) {
+            nextBackgroundPass = level.getGameTime() + BACKGROUND_INTERVAL;
+            var chunks = new LongArrayFIFOQueue(loaded.size());
+            loaded.forEach(chunks::enqueue);
+            jobs.add(new Job(chunks, true, null));
+        }
+        var job = jobs.peek();
+        if(job == null) return;
+        if(job.pending != null && job.pending.isDone()) {
+            var batch = job.pending.join();
+            job.pending = null;
+            job.checked += batch.checked();
+            job.candidates.addAll(batch.candidates());
+        }
+        while(!job.candidates.isEmpty() && System.nanoTime() < deadline) verify(job, job.candidates.poll());
+        if(job.pending == null && !job.chunks.isEmpty()) {
+            var snapshots = new ArrayList<Snapshot>(BATCH_SIZE);
+            while(snapshots.size() < BATCH_SIZE && !job.chunks.isEmpty() && System.nanoTime() < deadline) {
+                job.scanned++;
+                var snapshot = Snapshot.of(level, job.chunks.dequeueLong());
+                if(snapshot != null) snapshots.add(snapshot);
+            }
+            if(!snapshots.isEmpty()) job.pending = CompletableFuture.supplyAsync(() -> analyze(snapshots), Util.backgroundExecutor());
+        }
+        if(job.pending == null && job.chunks.isEmpty() && job.candidates.isEmpty()) {
+            jobs.poll();
+            job.done = true;
+            if(job.onDone != null) job.onDone.accept(job);
+        }
+    }
+
+    private static boolean isPart(Structure structure, BlockState state, int part) {
+        var block = structure.block();
+        return state.getBlock() == block && state.getValue(block.getPartsProperty()) == block.getPartValue(part) && block.getDirection(state) == structure.direction();
+    }
+
+    /*
+     * Runs on a background thread, only reading the copied sections.
+     * */
+    private static Batch analyze(List<Snapshot> snapshots) {
+        var byChunk = new Long2ObjectOpenHashMap<Snapshot>(snapshots.size());
+        for(Snapshot snapshot : snapshots) byChunk.put(ChunkPos.asLong(snapshot.x(), snapshot.z()), snapshot);
+        var structures = new LinkedHashSet<Structure>();
+        for(Snapshot snapshot : snapshots) {
+            for(int i = 0; i < snapshot.sections().length; i++) {
+                var section = snapshot.sections()[i];
+                if(section == null) continue;
+                int baseX = snapshot.x() << 4, baseY = (snapshot.minSection() + i) << 4, baseZ = snapshot.z() << 4;
+                for(int index = 0; index < 4096; index++) {
+                    int x = index & 15, y = index >> 8, z = (index >> 4) & 15;
+                    var state = section.get(x, y, z);
+                    if(!(state.getBlock() instanceof IMultipartBlock block)) continue;
+                    int value = state.getValue(block.getPartsProperty());
+                    if(block.getPartStorage() == PartStorage.REGISTRY && value != 0) continue;
+                    var direction = block.getDirection(state);
+                    long origin = block.getGeometry().origin(BlockPos.asLong(baseX + x, baseY + y, baseZ + z), direction, value);
+                    structures.add(new Structure(block, origin, direction));
+                }
+            }
+        }
+        var candidates = new ArrayList<Structure>();
+        for(Structure structure : structures) {
+            var geometry = structure.block().getGeometry();
+            for(int i = 0; i < geometry.size(); i++) {
+                var state = stateAt(byChunk, geometry.relative(structure.origin(), structure.direction(), i));
+                if(state == null || !isPart(structure, state, i)) {
+                    candidates.add(structure);
+                    break;
+                }
+            }
+        }
+        return new Batch(candidates, structures.size());
+    }
+
+    private static @Nullable BlockState stateAt(Long2ObjectOpenHashMap<Snapshot> byChunk, long pos) {
+        var snapshot = byChunk.get(ChunkPos.asLong(SectionPos.blockToSectionCoord(BlockPos.getX(pos)), SectionPos.blockToSectionCoord(BlockPos.getZ(pos))));
+        if(snapshot == null) return null;
+        int y = BlockPos.getY(pos);
+        int index = SectionPos.blockToSectionCoord(y) - snapshot.minSection();
+        if(index < 0 || index >= snapshot.sections().length) return Blocks.VOID_AIR.defaultBlockState();
+        var section = snapshot.sections()[index];
+        if(section == null) return Blocks.AIR.defaultBlockState();
+        return section.get(BlockPos.getX(pos) & 15, y & 15, BlockPos.getZ(pos) & 15);
+    }
+
+    private void verify(Job job, Structure structure) {
+        var block = structure.block();
+        var geometry = block.getGeometry();
+        long[] parts = new long[geometry.size()];
+        var missing = new BitSet(parts.length);
+        var cursor = new BlockPos.MutableBlockPos();
+        BlockState sample = null;
+        for(int i = 0; i < parts.length; i++) {
+            parts[i] = geometry.relative(structure.origin(), structure.direction(), i);
+            cursor.set(parts[i]);
+            if(!level.isInWorldBounds(cursor)) {
+                missing.set(i);
+                continue;
+            }
+            if(!level.isLoaded(cursor)) return;
+            var state = level.getBlockState(cursor);
+            if(!isPart(structure, state, i)) missing.set(i);
+            else if(sample == null) sample = state;
+        }
+        if(missing.isEmpty() || sample == null) return;
+        job.broken++;
+        if(!job.repair || block.getRepairAction() == RepairAction.IGNORE) return;
+        var registry = MultipartRegistry.get(level);
+        // A structure placed since the snapshot may own some of these slots: they are not ours to write or clear
+        for(long part : parts) {
+            if(isOwnedByOther(registry, structure, part)) return;
+        }
+        registry.getSurvivalCache().forget(structure.origin());
+        if(block.getRepairAction() == RepairAction.RESTORE && canRestore(parts, missing)) {
+            for(int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                level.setBlock(BlockPos.of(parts[i]), block.getStateForPart(sample, i), MultipartUpdates.SILENT_FLAGS);
+            }
+            if(block.useRegistry()) registry.track(block, structure.origin(), structure.direction());
+            job.restored++;
+        } else {
+            for(int i = 0; i < parts.length; i++) {
+                if(missing.get(i)) continue;
+                var pos = BlockPos.of(parts[i]);
+                level.setBlock(pos, level.getBlockState(pos).getFluidState().createLegacyBlock(), MultipartUpdates.SILENT_FLAGS);
+            }
+            if(block.useRegistry()) registry.untrack(structure.origin());
+            job.removed++;
+        }
+        MultipartUpdates.updateNeighbors(level, parts, sample.getBlock());
+    }
+
+    private static boolean isOwnedByOther(MultipartRegistry registry, Structure structure, long pos) {
+        var owner = registry.getByPart(pos);
+        return owner != null && (owner.block() != structure.block() || owner.origin() != structure.origin() || owner.direction() != structure.direction());
+    }
+
+    private boolean canRestore(long[] parts, BitSet missing) {
+        var cursor = new BlockPos.MutableBlockPos();
+        for(int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+            cursor.set(parts[i]);
+            if(!level.isInWorldBounds(cursor) || !level.getBlockState(cursor).canBeReplaced()) return false;
+        }
+        return true;
+    }
+
+    private record Structure(IMultipartBlock block, long origin, Direction direction) {}
+
+    private record Batch(List<Structure> candidates, int checked) {}
+
+    private record Snapshot(int x, int z, int minSection, PalettedContainer<BlockState>[] sections) {
+        /*
+         * Copies the sections of a loaded chunk which may contain a multipart, or returns null if there are none.
+         * */
+        @SuppressWarnings("unchecked")
+        static @Nullable Snapshot of(ServerLevel level, long chunk) {
+            var access = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk), ChunkPos.getZ(chunk));
+            if(access == null) return null;
+            var sections = access.getSections();
+            PalettedContainer<BlockState>[] copies = new PalettedContainer[sections.length];
+            boolean found = false;
+            for(int i = 0; i < sections.length; i++) {
+                if(sections[i].hasOnlyAir() || !sections[i].maybeHas(state -> state.getBlock() instanceof IMultipartBlock)) continue;
+                copies[i] = sections[i].getStates().copy();
+                found = true;
+            }
+            return found ? new Snapshot(ChunkPos.getX(chunk), ChunkPos.getZ(chunk), access.getMinSection(), copies) : null;
+        }
+    }
+
+    /**
+     * A scan of a set of chunks, and its results so far.
+     * */
+    public static final class Job {
+        private final LongArrayFIFOQueue chunks;
+        private final ArrayDeque<Structure> candidates = new ArrayDeque<>();
+        private final boolean repair;
+        private final @Nullable Consumer<Job> onDone;
+        private @Nullable CompletableFuture<Batch> pending;
+        private boolean done;
+        private int scanned;
+        private int checked;
+        private int broken;
+        private int restored;
+        private int removed;
+
+        private Job(LongArrayFIFOQueue chunks, boolean repair, @Nullable Consumer<Job> onDone) {
+            this.chunks = chunks;
+            this.repair = repair;
+            this.onDone = onDone;
+        }
+
+        /**
+         * @return whether the scan is complete
+         * */
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return how many chunks have been scanned, including unloaded chunks which have been skipped
+         * */
+        public int getScanned() {
+            return scanned;
+        }
+
+        /**
+         * @return how many structures have been checked
+         * */
+        public int getChecked() {
+            return checked;
+        }
+
+        /**
+         * @return how many partial structures have been found
+         * */
+        public int getBroken() {
+            return broken;
+        }
+
+        /**
+         * @return how many partial structures have been restored
+         * */
+        public int getRestored() {
+            return restored;
+        }
+
+        /**
+         * @return how many partial structures have been removed
+         * */
+        public int getRemoved() {
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.liukrast.multipart.level;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.block.MultipartFootprint;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LevelReader;
+import net.minecraft.world.level.block.Block;
+
+import java.util.BitSet;
+
+/**
+ * Remembers, for each structure of a level, which parts are missing, so survival checks only read the parts which changed.
+ * Used by blocks returning {@code true} from {@link IMultipartBlock#cacheSurvival()},
+ * it gives the same answer as {@link MultipartFootprint#missing}.
+ * <p>Parts are marked dirty by the registry whenever a block changes at their position,
+ * whatever the flags of the change, so silent and batched writes are seen as well.
+ * Structures are forgotten when their controller is replaced, and evicted when the chunk containing their origin unloads.</p>
+ * */
+public final class SurvivalCache {
+    private final Long2ObjectOpenHashMap<Entry> entries = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<LongSet> byChunk = new Long2ObjectOpenHashMap<>();
+
+    SurvivalCache() {}
+
+    /**
+     * Checks whether every part of a structure is still in place, reading only the parts marked dirty since the last check.
+     * @param block the multipart block
+     * @param level the level
+     * @param origin the packed origin of the structure
+     * @param direction the direction of the structure
+     * @param type the block every part should be
+     * @return whether the structure is complete
+     * */
+    public boolean test(IMultipartBlock block, LevelReader level, long origin, Direction direction, Block type) {
+        var geometry = block.getGeometry();
+        var entry = entries.get(origin);
+        if(entry == null) {
+            entry = new Entry();
+            entry.dirty.set(0, geometry.size());
+            entries.put(origin, entry);
+            byChunk.computeIfAbsent(MultipartRegistry.chunkOf(origin), key -> new LongOpenHashSet()).add(origin);
+        }
+        var cursor = new BlockPos.MutableBlockPos();
+        for(int i = entry.dirty.nextSetBit(0); i >= 0; i = entry.dirty.nextSetBit(i + 1)) {
+            var state = level.getBlockState(cursor.set(geometry.relative(origin, direction, i)));
+            entry.missing.set(i, !MultipartFootprint.isPart(block, state, i, direction, type));
+        }
+        entry.dirty.clear();
+        return entry.missing.isEmpty();
+    }
+
+    /**
+     * Tells how many parts the next {@link #test} of a structure will read.
+     * @param origin the packed origin of the structure
+     * @param size the number of parts of the structure
+     * @return the number of dirty parts, or {@code size} if the structure is not cached
+     * */
+    public int getPendingReads(long origin, int size) {
+        var entry = entries.get(origin);
+        return entry == null ? size : entry.dirty.cardinality();
+    }
+
+    /**
+     * Marks a part as changed, so it is read again on the next check.
+     * @param origin the packed origin of the structure
+     * @param part the part index
+     * */
+    public void invalidate(long origin, int part) {
+        var entry = entries.get(origin);
+        if(entry != null) entry.dirty.set(part);
+    }
+
+    /**
+     * Drops everything known about a structure.
+     * @param origin the packed origin of the structure
+     * */
+    public void forget(long origin) {
+        if(entries.remove(origin) == null) return;
+        long chunk = MultipartRegistry.chunkOf(origin);
+        var origins = byChunk.get(chunk);
+        if(origins != null && origins.remove(origin) && origins.isEmpty()) byChunk.remove(chunk);
+    }
+
+    void unloadChunk(ChunkPos chunk) {
+        var origins = byChunk.remove(chunk.toLong());
+        if(origins == null) return;
+        for(long origin : origins) entries.remove(origin);
+    }
+
+    private static final class Entry {
+        private final BitSet missing = new BitSet();
+        private final BitSet dirty = new BitSet();
+    }
+}
@@ -0,0 +1,97 @@
+package net.liukrast.multipart.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of a single multipart block type.
+ * See {@link MultipartMetrics}
+ * */
+public final class BlockMetrics {
+    private final String name;
+    final LongAdder placed = new LongAdder();
+    final LongAdder broken = new LongAdder();
+    final LongAdder partsTouched = new LongAdder();
+    final LongAdder survivalChecks = new LongAdder();
+    final LongAdder survivalReads = new LongAdder();
+    final LatencyHistogram placeLatency = new LatencyHistogram();
+    final LatencyHistogram destroyLatency = new LatencyHistogram();
+    final LatencyHistogram survivalLatency = new LatencyHistogram();
+
+    BlockMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the id of the block, also used as its profiler section
+     * */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return how many structures have been placed
+     * */
+    public long getPlaced() {
+        return placed.sum();
+    }
+
+    /**
+     * @return how many structures have been broken
+     * */
+    public long getBroken() {
+        return broken.sum();
+    }
+
+    /**
+     * @return how many parts have been written or removed while placing and breaking structures
+     * */
+    public long getPartsTouched() {
+        return partsTouched.sum();
+    }
+
+    /**
+     * @return how many times {@code canSurvive} has been called
+     * */
+    public long getSurvivalChecks() {
+        return survivalChecks.sum();
+    }
+
+    /**
+     * @return how many part states have been read by {@code canSurvive}
+     * */
+    public long getSurvivalReads() {
+        return survivalReads.sum();
+    }
+
+    /**
+     * @return the latency of placing a structure
+     * */
+    public LatencyHistogram getPlaceLatency() {
+        return placeLatency;
+    }
+
+    /**
+     * @return the latency of breaking a structure
+     * */
+    public LatencyHistogram getDestroyLatency() {
+        return destroyLatency;
+    }
+
+    /**
+     * @return the latency of {@code canSurvive}
+     * */
+    public LatencyHistogram getSurvivalLatency() {
+        return survivalLatency;
+    }
+
+    void reset() {
+        placed.reset();
+        broken.reset();
+        partsTouched.reset();
+        survivalChecks.reset();
+        survivalReads.reset();
+        placeLatency.reset();
+        destroyLatency.reset();
+        survivalLatency.reset();
+    }
+}
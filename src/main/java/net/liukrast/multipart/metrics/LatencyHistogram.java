@@ -0,0 +1,77 @@
+package net.liukrast.multipart.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two buckets, in nanoseconds.
+ * Percentiles are reported as the upper bound of the bucket they fall in, so they are precise within a factor of two.
+ * */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram() {}
+
+    /**
+     * Records a sample.
+     * @param nanos the measured duration
+     * */
+    public void record(long nanos) {
+        if(nanos < 0) nanos = 0;
+        buckets.incrementAndGet(nanos == 0 ? 0 : BUCKETS - 1 - Long.numberOfLeadingZeros(nanos));
+        count.increment();
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return the amount of recorded samples
+     * */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean duration in nanoseconds, or 0 if nothing has been recorded
+     * */
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : total.sum() / (double) count;
+    }
+
+    /**
+     * @return the longest duration recorded, in nanoseconds
+     * */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 1
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds
+     * */
+    public long percentile(double percentile) {
+        long count = count();
+        if(count == 0) return 0;
+        long target = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if(seen >= target) return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+        return max();
+    }
+
+    void reset() {
+        for(int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+}
@@ -0,0 +1,207 @@
+package net.liukrast.multipart.metrics;
+
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelReader;
+import net.minecraft.world.level.block.Block;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Runtime metrics of multipart operations, broken down per block type.
+ * <p>Structures placed and broken, parts touched and survival checks are counted on the server thread,
+ * and each of those operations runs inside a {@code multipart_api/<block id>} profiler section,
+ * so they show up by name in profiler and spark reports.</p>
+ * <p>Metrics can be read from here, with the {@code /multipart metrics} command,
+ * or through JMX as {@code net.liukrast.multipart:type=MultipartMetrics}.</p>
+ * <p>Nothing is measured unless the game is started with {@code -Dmultipart_api.metrics=true}.</p>
+ * */
+public final class MultipartMetrics {
+    /**
+     * Returned by {@link #begin} when the operation is not measured
+     * */
+    public static final long NOT_RECORDED = Long.MIN_VALUE;
+
+    private static final boolean ENABLED = Boolean.getBoolean("multipart_api.metrics");
+
+    private static final Map<IMultipartBlock, BlockMetrics> BLOCKS = new ConcurrentHashMap<>();
+    private static volatile IntSupplier highlights = () -> 0;
+
+    private MultipartMetrics() {}
+
+    /**
+     * @return whether metrics are recorded, set with the {@code multipart_api.metrics} system property
+     * */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Publishes the metrics through JMX, if they are enabled. Called by the loader specific code when a server starts.
+     * <p><b>Internal use only.</b></p>
+     * */
+    @ApiStatus.Internal
+    public static void register() {
+        if(ENABLED) MultipartMetricsBean.register();
+    }
+
+    /**
+     * Removes the metrics from JMX. Called by the loader specific code when a server stops.
+     * <p><b>Internal use only.</b></p>
+     * */
+    @ApiStatus.Internal
+    public static void unregister() {
+        if(ENABLED) MultipartMetricsBean.unregister();
+    }
+
+    /**
+     * @param block the multipart block
+     * @return the metrics of the block
+     * */
+    public static BlockMetrics of(IMultipartBlock block) {
+        return BLOCKS.computeIfAbsent(block, MultipartMetrics::create);
+    }
+
+    private static BlockMetrics create(IMultipartBlock block) {
+        return new BlockMetrics(block instanceof Block block1 ? BuiltInRegistries.BLOCK.getKey(block1).toString() : block.getClass().getName());
+    }
+
+    /**
+     * @return the metrics of every block which has been measured, sorted by name
+     * */
+    public static List<BlockMetrics> all() {
+        var list = new ArrayList<>(BLOCKS.values());
+        list.sort(Comparator.comparing(BlockMetrics::getName));
+        return list;
+    }
+
+    /**
+     * Resets the metrics of every block.
+     * */
+    public static void reset() {
+        BLOCKS.values().forEach(BlockMetrics::reset);
+    }
+
+    /**
+     * @return how many positions are highlighted by {@link net.liukrast.multipart.MultipartAPI#notify}, always 0 on dedicated servers
+     * */
+    public static int getHighlightCount() {
+        return highlights.getAsInt();
+    }
+
+    /**
+     * Sets where the highlight count is read from.
+     * <p><b>Internal use only.</b></p>
+     * @param source the highlight count
+     * */
+    @ApiStatus.Internal
+    public static void setHighlightSource(IntSupplier source) {
+        highlights = source;
+    }
+
+    /**
+     * Starts measuring an operation, entering its profiler sections.
+     * Only operations of server levels are measured, and only when metrics are enabled.
+     * @param level the level
+     * @param block the multipart block
+     * @return the start time, or {@link #NOT_RECORDED}
+     * */
+    @ApiStatus.Internal
+    public static long begin(LevelReader level, IMultipartBlock block) {
+        if(!ENABLED || !(level instanceof Level level1) || level1.isClientSide()) return NOT_RECORDED;
+        var profiler = level1.getProfiler();
+        profiler.push("multipart_api");
+        profiler.push(of(block).getName());
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends the measure of a placement.
+     * @param level the level
+     * @param block the multipart block
+     * @param start the value returned by {@link #begin}
+     * @param parts how many parts have been written, or {@code -1} if nothing has been placed
+     * */
+    @ApiStatus.Internal
+    public static void placed(LevelReader level, IMultipartBlock block, long start, int parts) {
+        if(start == NOT_RECORDED) return;
+        var metrics = of(block);
+        if(parts >= 0) {
+            metrics.placeLatency.record(System.nanoTime() - start);
+            metrics.placed.increment();
+            metrics.partsTouched.add(parts);
+        }
+        end(level);
+    }
+
+    /**
+     * Ends the measure of a destruction.
+     * @param level the level
+     * @param block the multipart block
+     * @param start the value returned by {@link #begin}
+     * @param parts how many parts have been removed, or {@code -1} if nothing has been broken
+     * */
+    @ApiStatus.Internal
+    public static void broken(LevelReader level, IMultipartBlock block, long start, int parts) {
+        if(start == NOT_RECORDED) return;
+        var metrics = of(block);
+        if(parts >= 0) {
+            metrics.destroyLatency.record(System.nanoTime() - start);
+            metrics.broken.increment();
+            metrics.partsTouched.add(parts);
+        }
+        end(level);
+    }
+
+    /**
+     * Ends the measure of a survival check.
+     * @param level the level
+     * @param block the multipart block
+     * @param start the value returned by {@link #begin}
+     * @param reads how many part states have been read
+     * */
+    @ApiStatus.Internal
+    public static void survival(LevelReader level, IMultipartBlock block, long start, int reads) {
+        if(start == NOT_RECORDED) return;
+        var metrics = of(block);
+        metrics.survivalLatency.record(System.nanoTime() - start);
+        metrics.survivalChecks.increment();
+        metrics.survivalReads.add(reads);
+        end(level);
+    }
+
+    private static void end(LevelReader level) {
+        var profiler = ((Level) level).getProfiler();
+        profiler.pop();
+        profiler.pop();
+    }
+
+    /**
+     * Formats the metrics of every block, one line per block.
+     * Latencies are given in microseconds, as mean/p99/max.
+     * @return the lines
+     * */
+    public static List<String> report() {
+        var lines = new ArrayList<String>();
+        lines.add("Highlighted positions: " + getHighlightCount());
+        if(!ENABLED) lines.add("Metrics are disabled, start with -Dmultipart_api.metrics=true to record them");
+        for(BlockMetrics metrics : all()) {
+            lines.add(String.format("%s: placed=%d broken=%d parts=%d checks=%d reads=%d place=%s destroy=%s survive=%s",
+                    metrics.getName(), metrics.getPlaced(), metrics.getBroken(), metrics.getPartsTouched(),
+                    metrics.getSurvivalChecks(), metrics.getSurvivalReads(),
+                    format(metrics.getPlaceLatency()), format(metrics.getDestroyLatency()), format(metrics.getSurvivalLatency())));
+        }
+        return lines;
+    }
+
+    private static String format(LatencyHistogram histogram) {
+        return String.format("%.1f/%.1f/%.1fus", histogram.mean() / 1000, histogram.percentile(0.99) / 1000.0, histogram.max() / 1000.0);
+    }
+}
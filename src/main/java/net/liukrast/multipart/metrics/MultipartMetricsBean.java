@@ -0,0 +1,112 @@
+package net.liukrast.multipart.metrics;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes {@link MultipartMetrics} through JMX while a server is running.
+ * */
+final class MultipartMetricsBean implements MultipartMetricsMXBean {
+    static final String NAME = "net.liukrast.multipart:type=MultipartMetrics";
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    static void register() {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var name = new ObjectName(NAME);
+            if(!server.isRegistered(name)) server.registerMBean(new MultipartMetricsBean(), name);
+        } catch(JMException e) {
+            LOGGER.warn("Unable to register multipart metrics", e);
+        }
+    }
+
+    static void unregister() {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var name = new ObjectName(NAME);
+            if(server.isRegistered(name)) server.unregisterMBean(name);
+        } catch(JMException e) {
+            LOGGER.warn("Unable to unregister multipart metrics", e);
+        }
+    }
+
+    private static Map<String, Long> longs(ToLongFunction<BlockMetrics> getter) {
+        var map = new LinkedHashMap<String, Long>();
+        for(BlockMetrics metrics : MultipartMetrics.all()) map.put(metrics.getName(), getter.applyAsLong(metrics));
+        return map;
+    }
+
+    private static Map<String, Double> micros(ToDoubleFunction<BlockMetrics> getter) {
+        var map = new LinkedHashMap<String, Double>();
+        for(BlockMetrics metrics : MultipartMetrics.all()) map.put(metrics.getName(), getter.applyAsDouble(metrics) / 1000);
+        return map;
+    }
+
+    @Override
+    public int getHighlightCount() {
+        return MultipartMetrics.getHighlightCount();
+    }
+
+    @Override
+    public Map<String, Long> getPlaced() {
+        return longs(BlockMetrics::getPlaced);
+    }
+
+    @Override
+    public Map<String, Long> getBroken() {
+        return longs(BlockMetrics::getBroken);
+    }
+
+    @Override
+    public Map<String, Long> getPartsTouched() {
+        return longs(BlockMetrics::getPartsTouched);
+    }
+
+    @Override
+    public Map<String, Long> getSurvivalChecks() {
+        return longs(BlockMetrics::getSurvivalChecks);
+    }
+
+    @Override
+    public Map<String, Long> getSurvivalReads() {
+        return longs(BlockMetrics::getSurvivalReads);
+    }
+
+    @Override
+    public Map<String, Double> getMeanPlaceMicros() {
+        return micros(metrics -> metrics.getPlaceLatency().mean());
+    }
+
+    @Override
+    public Map<String, Double> getMeanDestroyMicros() {
+        return micros(metrics -> metrics.getDestroyLatency().mean());
+    }
+
+    @Override
+    public Map<String, Double> getMeanSurvivalMicros() {
+        return micros(metrics -> metrics.getSurvivalLatency().mean());
+    }
+
+    @Override
+    public Map<String, Double> getP99SurvivalMicros() {
+        return micros(metrics -> metrics.getSurvivalLatency().percentile(0.99));
+    }
+
+    @Override
+    public String[] report() {
+        return MultipartMetrics.report().toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        MultipartMetrics.reset();
+    }
+}
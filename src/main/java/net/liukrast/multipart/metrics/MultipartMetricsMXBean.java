@@ -0,0 +1,32 @@
+package net.liukrast.multipart.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link MultipartMetrics}. Maps are keyed by block id, latencies are in microseconds.
+ * */
+public interface MultipartMetricsMXBean {
+    int getHighlightCount();
+
+    Map<String, Long> getPlaced();
+
+    Map<String, Long> getBroken();
+
+    Map<String, Long> getPartsTouched();
+
+    Map<String, Long> getSurvivalChecks();
+
+    Map<String, Long> getSurvivalReads();
+
+    Map<String, Double> getMeanPlaceMicros();
+
+    Map<String, Double> getMeanDestroyMicros();
+
+    Map<String, Double> getMeanSurvivalMicros();
+
+    Map<String, Double> getP99SurvivalMicros();
+
+    String[] report();
+
+    void reset();
+}
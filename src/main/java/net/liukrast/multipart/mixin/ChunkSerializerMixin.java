@@ -0,0 +1,40 @@
+package net.liukrast.multipart.mixin;
+
+import net.liukrast.multipart.level.MultipartChunk;
+import net.liukrast.multipart.level.MultipartRegistry;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.ai.village.poi.PoiManager;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.ImposterProtoChunk;
+import net.minecraft.world.level.chunk.ProtoChunk;
+import net.minecraft.world.level.chunk.storage.ChunkSerializer;
+import net.minecraft.world.level.chunk.storage.RegionStorageInfo;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(ChunkSerializer.class)
+public class ChunkSerializerMixin {
+
+    /*
+     * Structures are only tracked once the chunk is loaded into the level, see LevelChunkMixin.
+     * Proto chunks never hold tracked structures, so their entries are dropped.
+     * */
+    @Inject(method = "read", at = @At("RETURN"))
+    private static void read(ServerLevel level, PoiManager poiManager, RegionStorageInfo regionStorageInfo, ChunkPos pos, CompoundTag tag, CallbackInfoReturnable<ProtoChunk> cir) {
+        if(!(cir.getReturnValue() instanceof ImposterProtoChunk imposter) || !tag.contains(MultipartRegistry.TAG_KEY, Tag.TAG_LIST)) return;
+        ((MultipartChunk) imposter.getWrapped()).multipart$setPending(tag.getList(MultipartRegistry.TAG_KEY, Tag.TAG_COMPOUND));
+    }
+
+    @Inject(method = "write", at = @At("RETURN"))
+    private static void write(ServerLevel level, ChunkAccess chunk, CallbackInfoReturnable<CompoundTag> cir) {
+        var list = chunk instanceof MultipartChunk pending && pending.multipart$getPending() != null
+                ? pending.multipart$getPending()
+                : MultipartRegistry.get(level).save(chunk.getPos());
+        if(list != null) cir.getReturnValue().put(MultipartRegistry.TAG_KEY, list);
+    }
+}
@@ -0,0 +1,58 @@
+package net.liukrast.multipart.mixin;
+
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.liukrast.multipart.level.MultipartChunk;
+import net.liukrast.multipart.level.MultipartRegistry;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(LevelChunk.class)
+public abstract class LevelChunkMixin implements MultipartChunk {
+    @Shadow @Final Level level;
+
+    @Unique
+    private @Nullable ListTag multipart$pending;
+
+    @Override
+    public @Nullable ListTag multipart$getPending() {
+        return multipart$pending;
+    }
+
+    @Override
+    public void multipart$setPending(@Nullable ListTag pending) {
+        this.multipart$pending = pending;
+    }
+
+    /*
+     * Catches every change, on both sides: explosions, commands, pistons, silent writes and other mods never go through destroy.
+     * */
+    @Inject(method = "setBlockState", at = @At("RETURN"))
+    private void setBlockState(BlockPos pos, BlockState state, boolean isMoving, CallbackInfoReturnable<BlockState> cir) {
+        var previous = cir.getReturnValue();
+        if(previous == null || previous == state) return;
+        if(!(previous.getBlock() instanceof IMultipartBlock) && !(state.getBlock() instanceof IMultipartBlock)) return;
+        MultipartRegistry.get(level).onBlockChanged(pos.asLong(), previous, state);
+    }
+
+    @Inject(method = "runPostLoad", at = @At("HEAD"))
+    private void runPostLoad(CallbackInfo ci) {
+        var registry = MultipartRegistry.get(level);
+        var pos = ((LevelChunk) (Object) this).getPos();
+        registry.loadChunk(pos);
+        if(multipart$pending == null) return;
+        registry.load(pos, multipart$pending);
+        multipart$pending = null;
+    }
+}
@@ -0,0 +1,18 @@
+package net.liukrast.multipart.mixin;
+
+import net.liukrast.multipart.level.MultipartLevel;
+import net.liukrast.multipart.level.MultipartRegistry;
+import net.minecraft.world.level.Level;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+
+@Mixin(Level.class)
+public abstract class LevelMixin implements MultipartLevel {
+    @Unique
+    private final MultipartRegistry multipart$registry = new MultipartRegistry((Level) (Object) this);
+
+    @Override
+    public MultipartRegistry multipart$getRegistry() {
+        return multipart$registry;
+    }
+}
@@ -3,27 +3,43 @@ package net.liukrast.multipart.mixin;
 import com.llamalad7.mixinextras.sugar.Local;
 import com.mojang.blaze3d.vertex.PoseStack;
 import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.MultipartPreview;
 import net.minecraft.client.Camera;
 import net.minecraft.client.DeltaTracker;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.client.renderer.LightTexture;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Matrix4f;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(LevelRenderer.class)
 public class LevelRendererMixin {
+    @Shadow private Frustum cullingFrustum;
+    @Shadow @Nullable private Frustum capturedFrustum;
 
     @Inject(method = "renderLevel", at = @At(value = "INVOKE", target = "Lnet/minecraft/util/profiling/ProfilerFiller;popPush(Ljava/lang/String;)V", ordinal = 11))
     private void renderLevel(DeltaTracker deltaTracker, boolean renderBlockOutline, Camera camera, GameRenderer gameRenderer, LightTexture lightTexture, Matrix4f frustumMatrix, Matrix4f projectionMatrix, CallbackInfo ci, @Local PoseStack poseStack) {
         var mc = Minecraft.getInstance();
         var profiler = mc.getProfiler();
         profiler.push("multipart_api");
-        MultipartAPI.render(poseStack);
+        var frustum = capturedFrustum != null ? capturedFrustum : cullingFrustum;
+        MultipartAPI.render(poseStack, frustum);
+        MultipartPreview.render(poseStack, frustum);
         profiler.pop();
     }
+
+    @Inject(method = "blockChanged", at = @At("HEAD"))
+    private void blockChanged(BlockGetter level, BlockPos pos, BlockState oldState, BlockState newState, int flags, CallbackInfo ci) {
+        MultipartPreview.onBlockChanged(pos);
+    }
 }
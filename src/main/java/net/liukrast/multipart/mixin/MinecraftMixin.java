@@ -1,6 +1,7 @@
 package net.liukrast.multipart.mixin;
 
 import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.MultipartPreview;
 import net.minecraft.client.Minecraft;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -13,5 +14,6 @@ public class MinecraftMixin {
     @Inject(method = "tick", at = @At("TAIL"))
     private void tick(CallbackInfo ci) {
         MultipartAPI.tick();
+        MultipartPreview.tick();
     }
 }
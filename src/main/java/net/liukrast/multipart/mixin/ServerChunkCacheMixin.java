@@ -0,0 +1,30 @@
+package net.liukrast.multipart.mixin;
+
+import net.liukrast.multipart.network.MultipartSync;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ServerChunkCache.class)
+public class ServerChunkCacheMixin {
+    @Shadow @Final ServerLevel level;
+
+    @Inject(method = "blockChanged", at = @At("HEAD"), cancellable = true)
+    private void blockChanged(BlockPos pos, CallbackInfo ci) {
+        if(MultipartSync.onBlockChanged(level, pos)) ci.cancel();
+    }
+
+    /*
+     * Section updates are sent at the end of tickChunks, structure payloads follow them
+     * */
+    @Inject(method = "tickChunks", at = @At("RETURN"))
+    private void tickChunks(CallbackInfo ci) {
+        MultipartSync.flush(level);
+    }
+}
@@ -0,0 +1,25 @@
+package net.liukrast.multipart.mixin;
+
+import net.liukrast.multipart.level.MultipartRegistry;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.function.BooleanSupplier;
+
+@Mixin(ServerLevel.class)
+public class ServerLevelMixin {
+
+    @Inject(method = "tick", at = @At("RETURN"))
+    private void tick(BooleanSupplier hasTimeLeft, CallbackInfo ci) {
+        MultipartRegistry.get((ServerLevel) (Object) this).tick();
+    }
+
+    @Inject(method = "unload", at = @At("HEAD"))
+    private void unload(LevelChunk chunk, CallbackInfo ci) {
+        MultipartRegistry.get((ServerLevel) (Object) this).unloadChunk(chunk.getPos());
+    }
+}
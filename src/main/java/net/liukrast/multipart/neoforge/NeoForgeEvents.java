@@ -0,0 +1,36 @@
+package net.liukrast.multipart.neoforge;
+
+import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.command.MultipartCommands;
+import net.liukrast.multipart.metrics.MultipartMetrics;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.RegisterCommandsEvent;
+import net.neoforged.neoforge.event.server.ServerStartedEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Connects the loader independent parts of the API to NeoForge events: the {@code /multipart} command and JMX metrics.
+ * <p><b>Internal use only.</b></p>
+ * */
+@ApiStatus.Internal
+@EventBusSubscriber(modid = MultipartAPI.MOD_ID)
+public final class NeoForgeEvents {
+    private NeoForgeEvents() {}
+
+    @SubscribeEvent
+    static void registerCommands(RegisterCommandsEvent event) {
+        MultipartCommands.register(event.getDispatcher());
+    }
+
+    @SubscribeEvent
+    static void onServerStarted(ServerStartedEvent event) {
+        MultipartMetrics.register();
+    }
+
+    @SubscribeEvent
+    static void onServerStopped(ServerStoppedEvent event) {
+        MultipartMetrics.unregister();
+    }
+}
@@ -0,0 +1,40 @@
+package net.liukrast.multipart.neoforge;
+
+import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.client.MultipartClientSync;
+import net.liukrast.multipart.network.MultipartStructurePayload;
+import net.liukrast.multipart.network.MultipartSync;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.network.PacketDistributor;
+import net.neoforged.neoforge.network.event.RegisterPayloadHandlersEvent;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Registers {@link MultipartStructurePayload} on NeoForge and provides the {@link MultipartSync.Transport} sending it.
+ * <p><b>Internal use only.</b></p>
+ * */
+@ApiStatus.Internal
+@EventBusSubscriber(modid = MultipartAPI.MOD_ID, bus = EventBusSubscriber.Bus.MOD)
+public final class NeoForgeNetworking implements MultipartSync.Transport {
+    private NeoForgeNetworking() {}
+
+    @SubscribeEvent
+    static void register(RegisterPayloadHandlersEvent event) {
+        event.registrar("1")
+                .optional()
+                .playToClient(MultipartStructurePayload.TYPE, MultipartStructurePayload.STREAM_CODEC, (payload, context) -> MultipartClientSync.apply(payload, context.player()));
+        MultipartSync.setTransport(new NeoForgeNetworking());
+    }
+
+    @Override
+    public boolean canReceive(ServerPlayer player) {
+        return player.connection.hasChannel(MultipartStructurePayload.TYPE);
+    }
+
+    @Override
+    public void send(ServerPlayer player, MultipartStructurePayload payload) {
+        PacketDistributor.sendToPlayer(player, payload);
+    }
+}
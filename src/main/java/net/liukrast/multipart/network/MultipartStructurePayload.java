@@ -0,0 +1,77 @@
+package net.liukrast.multipart.network;
+
+import net.liukrast.multipart.MultipartAPI;
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+
+/**
+ * Sent to clients instead of one block update per part, when a multipart is placed or removed.
+ * The client expands it into the state of each part through the geometry of the block.
+ * @param state any state of the multipart, the part value is replaced for each part
+ * @param origin the packed origin of the multipart
+ * @param direction the direction of the multipart
+ * @param remove whether the parts have been removed instead of placed
+ * @param parts the indices of the parts to update
+ * */
+public record MultipartStructurePayload(BlockState state, long origin, Direction direction, boolean remove, BitSet parts) implements CustomPacketPayload {
+    public static final Type<MultipartStructurePayload> TYPE = new Type<>(ResourceLocation.fromNamespaceAndPath(MultipartAPI.MOD_ID, "structure"));
+    public static final StreamCodec<FriendlyByteBuf, MultipartStructurePayload> STREAM_CODEC = StreamCodec.ofMember(MultipartStructurePayload::write, MultipartStructurePayload::new);
+
+    private MultipartStructurePayload(FriendlyByteBuf buf) {
+        this(Block.stateById(buf.readVarInt()), buf.readLong(), buf.readEnum(Direction.class), buf.readBoolean(), BitSet.valueOf(buf.readLongArray()));
+    }
+
+    private void write(FriendlyByteBuf buf) {
+        buf.writeVarInt(Block.getId(state));
+        buf.writeLong(origin);
+        buf.writeEnum(direction);
+        buf.writeBoolean(remove);
+        buf.writeLongArray(parts.toLongArray());
+    }
+
+    @Override
+    public @NotNull Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    /**
+     * Writes the parts, the same way a vanilla block update would.
+     * Removed parts become the fluid they held, which is what the server wrote.
+     * <p>On the client, the writer must go through {@code ClientLevel#setServerVerifiedBlockState}:
+     * the player who placed or broke the structure predicted these changes, and a plain write would be undone
+     * when the server acknowledges the prediction.</p>
+     * @param level the level the parts are read from
+     * @param writer writes the state the server has for each part
+     * */
+    public void apply(BlockGetter level, PartWriter writer) {
+        if(!(state.getBlock() instanceof IMultipartBlock block)) return;
+        var geometry = block.getGeometry();
+        for(int i = parts.nextSetBit(0); i >= 0 && i < geometry.size(); i = parts.nextSetBit(i + 1)) {
+            var pos = BlockPos.of(geometry.relative(origin, direction, i));
+            writer.write(pos, remove ? level.getBlockState(pos).getFluidState().createLegacyBlock() : block.getStateForPart(state, i));
+        }
+    }
+
+    /**
+     * Receives the parts written by {@link #apply}.
+     * */
+    @FunctionalInterface
+    public interface PartWriter {
+        /**
+         * @param pos the position of the part
+         * @param state the state the server has at this position
+         * */
+        void write(BlockPos pos, BlockState state);
+    }
+}
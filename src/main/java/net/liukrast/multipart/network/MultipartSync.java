@@ -0,0 +1,163 @@
+package net.liukrast.multipart.network;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.liukrast.multipart.block.IMultipartBlock;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the block updates sent for the parts of a multipart with a single {@link MultipartStructurePayload}.
+ * <p>While a structure is written, changed positions reported to the chunk source are captured instead of being sent.
+ * Once done, parts which ended up in the expected state are queued in one payload for every player tracking the structure,
+ * and sent at the end of the tick, right after the chunk source sends the section updates.
+ * Any other captured position, or all of them if a tracking player can't receive the payload, goes through the vanilla path again.</p>
+ * <p>Sending payloads depends on the mod loader, which provides a {@link Transport}.
+ * Without one, nothing is captured and structures are synced through vanilla section updates.</p>
+ * <p><b>Internal use only.</b></p>
+ * */
+@ApiStatus.Internal
+public final class MultipartSync {
+    private static final ThreadLocal<Capture> CAPTURE = new ThreadLocal<>();
+    private static final Map<ServerLevel, List<Pending>> PENDING = new IdentityHashMap<>();
+    private static @Nullable Transport transport;
+
+    private MultipartSync() {}
+
+    /**
+     * Called once by the loader specific code, when the payload has been registered.
+     * @param transport the transport used to send payloads
+     * */
+    public static void setTransport(Transport transport) {
+        MultipartSync.transport = transport;
+    }
+
+    /**
+     * Starts capturing the block changes of a level on this thread.
+     * @param level the level
+     * @return whether capturing started. If true, {@link #release} must be called
+     * */
+    public static boolean capture(LevelAccessor level) {
+        if(transport == null || !(level instanceof ServerLevel serverLevel) || CAPTURE.get() != null) return false;
+        CAPTURE.set(new Capture(serverLevel, new LongArrayList()));
+        return true;
+    }
+
+    /**
+     * Called by the chunk source before a block change is queued for clients.
+     * @param level the level of the chunk source
+     * @param pos the changed position
+     * @return whether the change has been captured, and should not be queued
+     * */
+    public static boolean onBlockChanged(ServerLevel level, BlockPos pos) {
+        var capture = CAPTURE.get();
+        if(capture == null || capture.level() != level) return false;
+        capture.positions().add(pos.asLong());
+        return true;
+    }
+
+    /**
+     * Stops capturing, gives the positions which can't be covered by a payload back to the chunk source and queues the payload.
+     * @param block the multipart block
+     * @param state any state of the multipart
+     * @param origin the packed origin of the multipart
+     * @param direction the direction of the multipart
+     * @param remove whether the parts have been removed instead of placed
+     * */
+    public static void release(IMultipartBlock block, BlockState state, long origin, Direction direction, boolean remove) {
+        var capture = CAPTURE.get();
+        CAPTURE.remove();
+        if(capture == null || capture.positions().isEmpty() || transport == null) return;
+        var level = capture.level();
+        var chunkSource = level.getChunkSource();
+        var geometry = block.getGeometry();
+        var parts = new BitSet(geometry.size());
+        var covered = new LongOpenHashSet();
+        Set<ServerPlayer> players = new LinkedHashSet<>();
+        boolean supported = true;
+        long lastChunk = Long.MIN_VALUE;
+        for(long pos : capture.positions()) {
+            int part = geometry.indexOf(origin, direction, pos);
+            if(part == -1 || !matches(block, level, state, pos, part, remove)) continue;
+            parts.set(part);
+            covered.add(pos);
+            long chunk = ChunkPos.asLong(BlockPos.getX(pos) >> 4, BlockPos.getZ(pos) >> 4);
+            if(chunk == lastChunk) continue;
+            lastChunk = chunk;
+            for(ServerPlayer player : chunkSource.chunkMap.getPlayers(new ChunkPos(chunk), false)) {
+                if(players.add(player) && !transport.canReceive(player)) supported = false;
+            }
+        }
+        if(!supported) covered.clear();
+        var cursor = new BlockPos.MutableBlockPos();
+        for(long pos : capture.positions()) {
+            if(!covered.contains(pos)) chunkSource.blockChanged(cursor.set(pos));
+        }
+        if(covered.isEmpty() || players.isEmpty()) return;
+        PENDING.computeIfAbsent(level, l -> new ArrayList<>()).add(new Pending(block, new MultipartStructurePayload(state, origin, direction, remove, parts), players));
+    }
+
+    /**
+     * Called by the chunk source once it has sent the section updates of the tick.
+     * Parts which changed again since their payload was queued are left out, their section update has just been sent.
+     * @param level the level of the chunk source
+     * */
+    public static void flush(ServerLevel level) {
+        var pending = PENDING.remove(level);
+        if(pending == null || transport == null) return;
+        for(var entry : pending) {
+            var payload = entry.payload();
+            var parts = payload.parts();
+            for(int i = parts.nextSetBit(0); i >= 0; i = parts.nextSetBit(i + 1)) {
+                long pos = entry.block().getGeometry().relative(payload.origin(), payload.direction(), i);
+                if(!matches(entry.block(), level, payload.state(), pos, i, payload.remove())) parts.clear(i);
+            }
+            if(parts.isEmpty()) continue;
+            for(ServerPlayer player : entry.players()) {
+                if(!player.hasDisconnected()) transport.send(player, payload);
+            }
+        }
+    }
+
+    private static boolean matches(IMultipartBlock block, ServerLevel level, BlockState state, long pos, int part, boolean remove) {
+        var current = level.getBlockState(BlockPos.of(pos));
+        if(current.hasBlockEntity()) return false;
+        return remove ? current == current.getFluidState().createLegacyBlock() : current == block.getStateForPart(state, part);
+    }
+
+    /**
+     * Sends {@link MultipartStructurePayload payloads}, implemented by each mod loader.
+     * */
+    public interface Transport {
+        /**
+         * @param player the player
+         * @return whether the player can receive {@link MultipartStructurePayload}
+         * */
+        boolean canReceive(ServerPlayer player);
+
+        /**
+         * @param player the player
+         * @param payload the payload to send
+         * */
+        void send(ServerPlayer player, MultipartStructurePayload payload);
+    }
+
+    private record Capture(ServerLevel level, LongArrayList positions) {}
+
+    private record Pending(IMultipartBlock block, MultipartStructurePayload payload, Set<ServerPlayer> players) {}
+}